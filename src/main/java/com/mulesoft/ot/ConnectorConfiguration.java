@@ -1,29 +1,56 @@
 package com.mulesoft.ot;
 
+import com.mulesoft.ot.api.SamplingBudgetScope;
+import com.mulesoft.ot.api.TracingEngine;
+import com.mulesoft.ot.api.TracingMode;
+import com.mulesoft.ot.control.OverheadGovernor;
+import com.mulesoft.ot.control.TracingControls;
+import com.mulesoft.ot.control.TracingControlsFileWatcher;
+import com.mulesoft.ot.control.TracingControlsManager;
+import com.mulesoft.ot.jmx.JmxRegistry;
 import com.mulesoft.ot.listeners.ProcessorListener;
 import com.mulesoft.ot.listeners.FlowListener;
+import com.mulesoft.ot.listeners.ProfilingListener;
+import com.mulesoft.ot.export.ExportDestination;
+import com.mulesoft.ot.flightrecorder.FlightRecorder;
+import com.mulesoft.ot.metrics.LocationProfiler;
+import com.mulesoft.ot.metrics.ResourceSample;
+import com.mulesoft.ot.metrics.ResourceUsageSelector;
+import com.mulesoft.ot.processor.ComponentWrapper;
+import com.mulesoft.ot.processor.ExceptionRecorder;
 import com.mulesoft.ot.processor.MuleNotificationProcessor;
+import com.mulesoft.ot.processor.SchedulingDelayRecorder;
+import com.mulesoft.ot.replay.NotificationRecorder;
 import com.mulesoft.ot.tracevault.OtelConnection;
+import com.mulesoft.ot.tracevault.TraceVault;
 import org.mule.runtime.api.lifecycle.Startable;
+import org.mule.runtime.api.lifecycle.Stoppable;
 import org.mule.runtime.api.meta.ExpressionSupport;
 import org.mule.runtime.api.notification.NotificationListenerRegistry;
+import org.mule.runtime.core.api.MuleContext;
 import org.mule.runtime.extension.api.annotation.Configuration;
 import org.mule.runtime.extension.api.annotation.Expression;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
 import org.mule.runtime.extension.api.annotation.param.display.Example;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.management.ObjectName;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Configuration to send the traces to an Open Telemetry collector. The
  * connector implements OpenTelemetry SDK Autoconfigure.
  */
 @Configuration
-public class ConnectorConfiguration implements Startable {
+public class ConnectorConfiguration implements Startable, Stoppable {
 
     private final Logger log = LoggerFactory.getLogger(ConnectorConfiguration.class);
 
@@ -45,20 +72,511 @@ public class ConnectorConfiguration implements Startable {
     @Example(value = "http://localhost:4317")
     String collectorEndpoint;
 
+    @Parameter
+    @Optional(defaultValue = "TRACING")
+    @Summary("TRACING creates and exports spans, PROFILING only records the latency of every processor location")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    TracingMode tracingMode;
+
+    @Parameter
+    @Optional(defaultValue = "NOTIFICATIONS")
+    @Summary("NOTIFICATIONS traces the processors from the server notifications, INTERCEPTOR from an interceptor")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    TracingEngine tracingEngine;
+
+    @Parameter
+    @Optional(defaultValue = "20")
+    @Summary("Maximum number of stack frames recorded for an exception, 0 records no stack trace")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int maxStackDepth;
+
+    @Parameter
+    @Optional(defaultValue = "60")
+    @Summary("Seconds in which a repeated exception is recorded only with its fingerprint, 0 records all in full")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int exceptionFingerprintWindow;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Exports request rate, error rate and duration metrics of the flows calculated from the root spans")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean redMetrics;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Traces per second targeted by the adaptive sampler, 0 disables the adaptive sampler")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    double samplingTracesPerSecond;
+
+    @Parameter
+    @Optional(defaultValue = "NODE")
+    @Summary("Scope of the traces per second of the adaptive sampler, the node or every flow")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    SamplingBudgetScope samplingBudgetScope;
+
+    @Parameter
+    @Optional(defaultValue = "1")
+    @Summary("Traces per second guaranteed for every flow by the adaptive sampler")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    double samplingMinTracesPerFlow;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Exports the spans through a queue that gives priority to error, slow and root spans")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean priorityExportQueue;
+
+    @Parameter
+    @Optional(defaultValue = "2048")
+    @Summary("Maximum number of spans waiting in the export queue")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int exportQueueSize;
+
+    @Parameter
+    @Optional(defaultValue = "20")
+    @Summary("Percentage of the export queue reserved for error, slow and root spans")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int exportReservedPercentage;
+
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @Summary("Milliseconds from which a server span is considered slow by the export queue")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    long slowSpanThreshold;
+
+    @Parameter
+    @Optional(defaultValue = "1")
+    @Summary("Number of shards of the priority export queue, every shard exports the spans of a part of the traces")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int exportShards;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("The priority export queue encodes the spans with the low allocation OTLP/HTTP exporter")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean directOtlpExport;
+
+    @Parameter
+    @Optional
+    @Summary("Additional destinations of the spans, every destination exports through a queue of its own")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "backup=otlp-http@https://collector.eu:4318/v1/traces;queueSize=4096, local=logging")
+    String exportDestinations;
+
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @Summary("Maximum number of open spans kept per transaction, the following ones are not recorded")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int maxOpenSpans;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Seconds after which an open span of a transaction is ended as abandoned, 0 disables the timeout")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    long openSpanTimeout;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Creates only the flow spans, without processor spans. Can be changed at runtime")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean liteMode;
+
+    @Parameter
+    @Optional
+    @Summary("Namespaces of the processors traced, separated by commas, by default all. Can be changed at runtime")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "http")
+    String tracedNamespaces;
+
+    @Parameter
+    @Optional
+    @Summary("Namespaces without dedicated support whose processors get an INTERNAL span. Can be changed at runtime")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "ee, db")
+    String internalSpanNamespaces;
+
+    @Parameter
+    @Optional(defaultValue = "true")
+    @Summary("Records the HTTP headers as span attributes. Can be changed at runtime")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean captureHttpHeaders;
+
+    @Parameter
+    @Optional
+    @Summary("Properties file with tracing controls, applied every time it changes")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "/opt/mule/conf/tracing-controls.properties")
+    String tracingControlsFile;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Degrades the tracing level automatically when the tracing overhead crosses the thresholds")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean overheadGovernor;
+
+    @Parameter
+    @Optional(defaultValue = "500")
+    @Summary("Average microseconds per event spent by the connector from which the tracing level degrades")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    long overheadMaxHandlerMicros;
+
+    @Parameter
+    @Optional(defaultValue = "10000")
+    @Summary("Transactions in progress from which the tracing level degrades")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int overheadMaxTransactions;
+
+    @Parameter
+    @Optional(defaultValue = "20")
+    @Summary("Percentage of time spent in GC from which the tracing level degrades")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int overheadMaxGcPercentage;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Records the thread CPU time and allocated bytes of the flow and processor spans")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean spanResourceUsage;
+
+    @Parameter
+    @Optional
+    @Summary("Location prefixes, separated by commas, of the spans that record CPU time and allocated bytes")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "orders-flow, customers-flow/processors/2")
+    String resourceUsageLocations;
+
+    @Parameter
+    @Optional(defaultValue = "0.1")
+    @Summary("Ratio of the spans of the selected locations that record CPU time and allocated bytes")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    double resourceUsageRatio;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Records the time the events wait for a thread before the flows and processors, and the thread hops")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean schedulingDelay;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Waits of this number of milliseconds or more get a wait span, 0 records only the span attributes")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    long waitSpanThreshold;
+
+    @Parameter
+    @Optional(defaultValue = "true")
+    @Summary("Injects the trace context into the headers of the http:request operations")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean propagateHttpRequestHeaders;
+
+    @Parameter
+    @Optional(defaultValue = "true")
+    @Summary("Adds the trace context to every processor in the variable openTelemetryTrace")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean traceContextVariable;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Sends the attributes constant for the application, like mule.serverId, once in the resource")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean constantAttributesInResource;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("The internal processor spans are created when the processor ends, only the start data is kept before")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean deferredSpans;
+
+    @Parameter
+    @Optional
+    @Summary("Milliseconds under which the internal spans are not exported, for all the namespaces or per namespace")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "1, ee=5, db=0")
+    String shortSpanThresholds;
+
+    @Parameter
+    @Optional
+    @Summary("Records the flow and processor notifications in this rolling binary log, to replay them offline")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    @Example(value = "/opt/mule/logs/notifications.bin")
+    String notificationRecordingFile;
+
+    @Parameter
+    @Optional(defaultValue = "64")
+    @Summary("Megabytes of a file of the notification log from which a new file starts")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int notificationRecordingMaxFileSize;
+
+    @Parameter
+    @Optional(defaultValue = "10")
+    @Summary("Files of the notification log kept, the oldest ones are deleted")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int notificationRecordingMaxFiles;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Last completed traces kept in memory and dumped on demand as OTLP JSON, 0 disables the flight recorder")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int flightRecorderTraces;
+
+    @Parameter
+    @Optional(defaultValue = "10")
+    @Summary("Minutes the flight recorder keeps the traces with errors")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    int flightRecorderErrorMinutes;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Exports the spans through one pipeline shared by the applications of the worker with the same endpoint")
+    @Expression(ExpressionSupport.NOT_SUPPORTED)
+    @Placement(tab = Placement.ADVANCED_TAB)
+    boolean sharedExportPipeline;
+
     @Inject
     NotificationListenerRegistry notificationListenerRegistry;
 
     @Inject
     MuleNotificationProcessor muleNotificationProcessor;
 
+    @Inject
+    MuleContext muleContext;
+
+    private LocationProfiler locationProfiler;
+    private TracingControlsFileWatcher controlsWatcher;
+    private OverheadGovernor governor;
+    private NotificationRecorder notificationRecorder;
+    private FlightRecorder flightRecorder;
+    private List<ExportDestination> destinations = Collections.emptyList();
+    private final List<ObjectName> mbeans = new ArrayList<>();
+
     @Override
     public void start() {
+        if (TracingMode.PROFILING.equals(tracingMode)) {
+            log.debug("OpenTelemetry Connector Initialization, profiling mode");
+            locationProfiler = new LocationProfiler();
+            JmxRegistry.register("LocationProfiler", serviceName, locationProfiler).ifPresent(mbeans::add);
+            notificationListenerRegistry.registerListener(new ProfilingListener(locationProfiler));
+            return;
+        }
+
         log.debug("OpenTelemetry Connector Initialization, registering listeners and configuration");
 
-        muleNotificationProcessor
-                .init(() -> OtelConnection.getInstance(serviceName, additionalTags, collectorEndpoint));
+        destinations = ExportDestination.parse(exportDestinations, exportQueueSize, exportReservedPercentage);
+
+        TracingControlsManager controls = TracingControlsManager.getInstance();
+        controls.set(new TracingControls(true, liteMode, tracedNamespaces, internalSpanNamespaces,
+                captureHttpHeaders, samplingTracesPerSecond));
+        JmxRegistry.register("TracingControls", serviceName, controls).ifPresent(mbeans::add);
+        if (tracingControlsFile != null && !tracingControlsFile.trim().isEmpty()) {
+            controlsWatcher = new TracingControlsFileWatcher(Paths.get(tracingControlsFile.trim()), controls);
+            controlsWatcher.start();
+        }
+
+        if (flightRecorderTraces > 0) {
+            flightRecorder = new FlightRecorder(flightRecorderTraces, flightRecorderErrorMinutes);
+            JmxRegistry.register("FlightRecorder", serviceName, flightRecorder).ifPresent(mbeans::add);
+        }
+
+        if (overheadGovernor) {
+            governor = new OverheadGovernor(controls, TraceVault.getInstance(), overheadMaxHandlerMicros,
+                    overheadMaxTransactions, overheadMaxGcPercentage);
+            governor.start();
+        }
+
+        ResourceUsageSelector resourceUsage = null;
+        if (spanResourceUsage) {
+            if (ResourceSample.enable()) {
+                resourceUsage = new ResourceUsageSelector(resourceUsageLocations, resourceUsageRatio);
+            } else {
+                log.warn("The JVM does not measure thread CPU time or allocated bytes, span resource usage disabled");
+            }
+        }
+
+        muleNotificationProcessor.init(() -> OtelConnection.getInstance(this),
+                new ExceptionRecorder(maxStackDepth, exceptionFingerprintWindow), tracingEngine, governor,
+                resourceUsage, schedulingDelay ? new SchedulingDelayRecorder(waitSpanThreshold) : null);
+        muleNotificationProcessor.setContextPropagation(traceContextVariable, propagateHttpRequestHeaders);
+        muleNotificationProcessor.setDeferredSpans(deferredSpans);
+
+        if (notificationRecordingFile != null && !notificationRecordingFile.trim().isEmpty()) {
+            notificationRecorder = new NotificationRecorder(Paths.get(notificationRecordingFile.trim()),
+                    notificationRecordingMaxFileSize * 1024L * 1024L, notificationRecordingMaxFiles);
+            notificationRecorder.start();
+        }
+
+        // The interceptor engine creates the processor spans, the flow spans still come
+        // from the notifications
+        if (!muleNotificationProcessor.isInterceptorEngine()) {
+            notificationListenerRegistry
+                    .registerListener(new ProcessorListener(muleNotificationProcessor, notificationRecorder));
+        }
+        notificationListenerRegistry
+                .registerListener(new FlowListener(muleNotificationProcessor, notificationRecorder));
+    }
+
+    @Override
+    public void stop() {
+        if (governor != null) {
+            governor.stop();
+        }
+        if (controlsWatcher != null) {
+            controlsWatcher.stop();
+            controlsWatcher = null;
+        }
+        if (notificationRecorder != null) {
+            notificationRecorder.stop();
+            notificationRecorder = null;
+        }
+        // Exports the spans left and stops the export workers, an undeployed
+        // application leaves no thread running with its classes
+        OtelConnection.shutdown();
+        mbeans.forEach(JmxRegistry::unregister);
+        mbeans.clear();
+        ComponentWrapper.clearConfigCache();
+    }
+
+    /**
+     * Profiler of the processor locations, empty when the mode is not PROFILING
+     */
+    public java.util.Optional<LocationProfiler> getLocationProfiler() {
+        return java.util.Optional.ofNullable(locationProfiler);
+    }
+
+    /**
+     * Flight recorder of the last traces, empty when it is not enabled
+     */
+    public java.util.Optional<FlightRecorder> getFlightRecorder() {
+        return java.util.Optional.ofNullable(flightRecorder);
+    }
+
+    /**
+     * Governor of the tracing overhead, empty when it is not enabled
+     */
+    public java.util.Optional<OverheadGovernor> getOverheadGovernor() {
+        return java.util.Optional.ofNullable(governor);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getAdditionalTags() {
+        return additionalTags;
+    }
+
+    public String getCollectorEndpoint() {
+        return collectorEndpoint;
+    }
+
+    public boolean isRedMetrics() {
+        return redMetrics;
+    }
+
+    public double getSamplingTracesPerSecond() {
+        return samplingTracesPerSecond;
+    }
+
+    public SamplingBudgetScope getSamplingBudgetScope() {
+        return samplingBudgetScope;
+    }
+
+    public double getSamplingMinTracesPerFlow() {
+        return samplingMinTracesPerFlow;
+    }
+
+    public boolean isPriorityExportQueue() {
+        return priorityExportQueue;
+    }
+
+    public int getExportQueueSize() {
+        return exportQueueSize;
+    }
+
+    public int getExportReservedPercentage() {
+        return exportReservedPercentage;
+    }
+
+    public long getSlowSpanThreshold() {
+        return slowSpanThreshold;
+    }
+
+    public String getShortSpanThresholds() {
+        return shortSpanThresholds == null || shortSpanThresholds.trim().isEmpty() ? null : shortSpanThresholds;
+    }
+
+    public boolean isConstantAttributesInResource() {
+        return constantAttributesInResource;
+    }
+
+    /**
+     * Id of the server in the notifications, the value of mule.serverId
+     */
+    public String getServerId() {
+        return muleContext != null ? muleContext.getId() : null;
+    }
+
+    public boolean isDirectOtlpExport() {
+        return directOtlpExport;
+    }
+
+    public int getExportShards() {
+        return exportShards;
+    }
+
+    public List<ExportDestination> getExportDestinations() {
+        return destinations;
+    }
+
+    public boolean isSharedExportPipeline() {
+        return sharedExportPipeline;
+    }
+
+    public int getMaxOpenSpans() {
+        return maxOpenSpans;
+    }
 
-        notificationListenerRegistry.registerListener(new ProcessorListener(muleNotificationProcessor));
-        notificationListenerRegistry.registerListener(new FlowListener(muleNotificationProcessor));
+    public long getOpenSpanTimeout() {
+        return openSpanTimeout;
     }
 }
@@ -2,6 +2,7 @@ package com.mulesoft.ot;
 
 import org.mule.runtime.extension.api.annotation.Configurations;
 import org.mule.runtime.extension.api.annotation.Extension;
+import org.mule.runtime.extension.api.annotation.Operations;
 import org.mule.runtime.extension.api.annotation.dsl.xml.Xml;
 import org.mule.runtime.api.meta.Category;
 
@@ -13,6 +14,7 @@ import org.mule.runtime.api.meta.Category;
 @Xml(prefix = "open-telemetry")
 @Extension(name = "Open Telemetry Connector", category = Category.COMMUNITY)
 @Configurations(ConnectorConfiguration.class)
+@Operations(ConnectorOperations.class)
 @SuppressWarnings("unused")
 public class ConnectorMain {
 }
@@ -0,0 +1,191 @@
+package com.mulesoft.ot;
+
+import com.mulesoft.ot.api.SpanStatus;
+import com.mulesoft.ot.api.SpanTarget;
+import com.mulesoft.ot.api.SpanType;
+import com.mulesoft.ot.control.TracingControls;
+import com.mulesoft.ot.control.TracingControlsManager;
+import com.mulesoft.ot.tracevault.OtelConnection;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.Content;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.NullSafe;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.parameter.CorrelationInfo;
+import org.mule.runtime.extension.api.runtime.process.CompletionCallback;
+import org.mule.runtime.extension.api.runtime.route.Chain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations to enrich the spans of the current transaction. The values are
+ * written directly to the span, no event variables are used.
+ */
+public class ConnectorOperations {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectorOperations.class);
+
+    /**
+     * Adds tags to the span of the current flow or to the root span of the
+     * transaction. Boolean and numeric values keep their type in the span.
+     */
+    @Summary("Adds tags to the current span or to the root span of the transaction")
+    public void addTags(@Content Map<String, Object> tags, @Optional(defaultValue = "CURRENT") SpanTarget target,
+            CorrelationInfo correlationInfo, ComponentLocation location) {
+        getSpan(target, correlationInfo, location).ifPresent(span -> tags.forEach((key, value) -> {
+            log.trace("Tag key:{}, value:{}", key, value);
+            setAttribute(span, key, value);
+        }));
+    }
+
+    /**
+     * Sets the status of the span of the current flow or of the root span of the
+     * transaction.
+     */
+    @Summary("Sets the status of the current span or of the root span of the transaction")
+    public void setSpanStatus(SpanStatus statusCode, @Optional String description,
+            @Optional(defaultValue = "CURRENT") SpanTarget target, CorrelationInfo correlationInfo,
+            ComponentLocation location) {
+        getSpan(target, correlationInfo, location).ifPresent(span -> {
+            if (description == null) {
+                span.setStatus(statusCode.getStatusCode());
+            } else {
+                span.setStatus(statusCode.getStatusCode(), description);
+            }
+        });
+    }
+
+    /**
+     * Measures the nested processors in a span of their own. The span is a child
+     * of the span of the flow that executes the scope, or of the enclosing scope,
+     * and the spans of the nested processors are its children.
+     */
+    @Summary("Creates a span around the nested processors")
+    public void span(String spanName, @Optional(defaultValue = "INTERNAL") SpanType kind,
+            @Optional @NullSafe @Content Map<String, Object> attributes, CorrelationInfo correlationInfo,
+            ComponentLocation location, Chain operations, CompletionCallback<Object, Object> callback) {
+        String transactionId = correlationInfo.getCorrelationId();
+        OtelConnection.get()
+                .flatMap(connection -> connection.getTraceVault().startSpan(transactionId,
+                        location.getRootContainerName(), location.getLocation(),
+                        connection.spanBuilder(spanName).setSpanKind(kind.getSpanKind()), System.nanoTime()))
+                .ifPresent(span -> attributes.forEach((key, value) -> setAttribute(span, key, value)));
+
+        operations.process(result -> {
+            endSpan(transactionId, location, null);
+            callback.success(result);
+        }, (error, previous) -> {
+            endSpan(transactionId, location, error);
+            callback.error(error);
+        });
+    }
+
+    /**
+     * Latency of every processor location recorded in PROFILING mode: location,
+     * count, p50Ms, p99Ms and maxMs.
+     */
+    @Summary("Returns the latency percentiles of every processor location recorded in profiling mode")
+    public List<Map<String, Object>> dumpProfile(@Config ConnectorConfiguration configuration,
+            @Optional(defaultValue = "true") boolean reset) {
+        return configuration.getLocationProfiler().map(profiler -> profiler.dump(reset)).orElseGet(() -> {
+            log.debug("The profiler is available only in PROFILING mode");
+            return Collections.emptyList();
+        });
+    }
+
+    /**
+     * Last traces kept by the flight recorder, with the error traces of the last
+     * minutes, as an OTLP JSON export request.
+     */
+    @Summary("Returns the last traces of the flight recorder as OTLP JSON")
+    @MediaType(value = MediaType.APPLICATION_JSON, strict = false)
+    public String dumpFlightRecorder(@Config ConnectorConfiguration configuration,
+            @Optional(defaultValue = "false") boolean errorsOnly) {
+        return configuration.getFlightRecorder().map(flightRecorder -> flightRecorder.dump(errorsOnly))
+                .orElseGet(() -> {
+                    log.debug("The flight recorder is not enabled");
+                    return "{\"resourceSpans\":[]}";
+                });
+    }
+
+    /**
+     * Changes the tracing controls of the application without a redeploy, the
+     * parameters not set keep their value. The change applies to the following
+     * events.
+     */
+    @Summary("Changes the tracing controls at runtime and returns the controls in use")
+    public Map<String, Object> updateTracingControls(@Optional Boolean enabled, @Optional Boolean liteMode,
+            @Optional String tracedNamespaces, @Optional String internalSpanNamespaces,
+            @Optional Boolean captureHttpHeaders, @Optional Double samplingTracesPerSecond) {
+        return TracingControlsManager.getInstance().update(controls -> {
+            TracingControls updated = controls;
+            if (enabled != null) {
+                updated = updated.withEnabled(enabled);
+            }
+            if (liteMode != null) {
+                updated = updated.withLiteMode(liteMode);
+            }
+            if (tracedNamespaces != null) {
+                updated = updated.withTracedNamespaces(tracedNamespaces);
+            }
+            if (internalSpanNamespaces != null) {
+                updated = updated.withInternalSpanNamespaces(internalSpanNamespaces);
+            }
+            if (captureHttpHeaders != null) {
+                updated = updated.withCaptureHttpHeaders(captureHttpHeaders);
+            }
+            if (samplingTracesPerSecond != null) {
+                updated = updated.withSamplingTracesPerSecond(samplingTracesPerSecond);
+            }
+            return updated;
+        }).toMap();
+    }
+
+    private void endSpan(String transactionId, ComponentLocation location, Throwable error) {
+        OtelConnection.get().ifPresent(connection -> connection.getTraceVault().endSpan(transactionId,
+                location.getLocation(), span -> {
+                    if (error != null) {
+                        span.setStatus(StatusCode.ERROR, String.valueOf(error.getMessage()));
+                    }
+                }, System.nanoTime()));
+    }
+
+    private java.util.Optional<Span> getSpan(SpanTarget target, CorrelationInfo correlationInfo,
+            ComponentLocation location) {
+        java.util.Optional<Span> span = OtelConnection.get().map(OtelConnection::getTraceVault)
+                .flatMap(traceVault -> SpanTarget.ROOT.equals(target)
+                        ? traceVault.getRootSpan(correlationInfo.getCorrelationId())
+                        : traceVault.getFlowSpan(correlationInfo.getCorrelationId(),
+                                location.getRootContainerName()));
+        if (!span.isPresent()) {
+            log.debug("No span found, transaction: {}, location: {}", correlationInfo.getCorrelationId(),
+                    location.getLocation());
+        }
+        return span;
+    }
+
+    private void setAttribute(Span span, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Boolean) {
+            span.setAttribute(key, (Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            span.setAttribute(key, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            span.setAttribute(key, ((Number) value).doubleValue());
+        } else {
+            span.setAttribute(key, value.toString());
+        }
+    }
+}
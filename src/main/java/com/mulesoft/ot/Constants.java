@@ -31,15 +31,27 @@ public class Constants {
     public static final String NAMESPACE_MULE = "mule";
     public static final String FLOW_EVENT = "flow";
     public static final String HTTP_NAMESPACE = "http";
+    public static final String CONNECTOR_NAMESPACE = "open-telemetry";
 
     // **********************************
     // Connector configuration
     // **********************************
     public static final String OTEL_TRACES_EXPORTER = "otel.traces.exporter";
     public static final String OTEL_EXPORTER_OTLP_ENDPOINT = "otel.exporter.otlp.endpoint";
+    public static final String OTEL_EXPORTER_OTLP_TRACES_ENDPOINT = "otel.exporter.otlp.traces.endpoint";
+    public static final String OTEL_EXPORTER_OTLP_PROTOCOL = "otel.exporter.otlp.protocol";
+    public static final String OTEL_EXPORTER_OTLP_TRACES_PROTOCOL = "otel.exporter.otlp.traces.protocol";
+    public static final String OTEL_EXPORTER_OTLP_HEADERS = "otel.exporter.otlp.headers";
+    public static final String OTEL_EXPORTER_OTLP_TIMEOUT = "otel.exporter.otlp.timeout";
+    public static final String OTEL_BSP_SCHEDULE_DELAY = "otel.bsp.schedule.delay";
+    public static final String OTEL_BSP_MAX_QUEUE_SIZE = "otel.bsp.max.queue.size";
+    public static final String OTEL_BSP_MAX_EXPORT_BATCH_SIZE = "otel.bsp.max.export.batch.size";
+    public static final String OTEL_BSP_EXPORT_TIMEOUT = "otel.bsp.export.timeout";
     public static final String OTEL_METRICS_EXPORTER = "otel.metrics.exporter";
     public static final String OTEL_RESOURCE_ATTRIBUTES = "otel.resource.attributes";
     public static final String OTEL_SERVICE_NAME = "otel.service.name";
+    public static final String OTEL_METRICS_EXEMPLAR_FILTER = "otel.metrics.exemplar.filter";
+    public static final String WITH_SAMPLED_TRACE = "with_sampled_trace";
     public static final String OTLP = "otlp";
     public static final String NONE = "none";
 
@@ -56,6 +68,22 @@ public class Constants {
     public static final String SERVICE_PROCESSOR_DOCNAME = "mule.service.processor.docName";
     public static final String PROCESSOR_CONFIGREF = "mule.service.processor.configRef";
     public static final String HTTP_CONTENT_TYPE = "http.content_type";
+    public static final String MULE_ERROR_TYPE = "mule.error.type";
+    public static final String MULE_ERROR_DESCRIPTION = "mule.error.description";
+    public static final String EXCEPTION_FINGERPRINT = "exception.fingerprint";
+    public static final String SAMPLING_PROBABILITY = "sampling.probability";
+    public static final String SPAN_ABANDONED = "mule.span.abandoned";
+    public static final String SPAN_CPU_TIME = "mule.span.cpu_time_ns";
+    public static final String SPAN_ALLOCATED_BYTES = "mule.span.allocated_bytes";
+    public static final String SPAN_THREAD_SWITCH = "mule.span.thread_switch";
+    public static final String WAIT_SOURCE = "mule.wait.source_ms";
+    public static final String WAIT_PREVIOUS = "mule.wait.previous_ns";
+    public static final String WAIT_PREVIOUS_THREAD = "mule.wait.previous_thread";
+    public static final String WAIT_THREAD_HOP = "mule.wait.thread_hop";
+    public static final String THREAD_NAME = "mule.thread.name";
+    public static final String WAIT_SPAN_NAME = "wait";
+    public static final String SPAN_DROPPED_CHILDREN = "mule.span.dropped_children";
+    public static final String SPAN_DROPPED_CHILDREN_DURATION = "mule.span.dropped_children_duration_ns";
 
     // **********************************
     // General
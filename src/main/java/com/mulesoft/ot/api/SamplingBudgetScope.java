@@ -0,0 +1,11 @@
+package com.mulesoft.ot.api;
+
+/**
+ * Scope of the traces per second budget of the sampler
+ */
+public enum SamplingBudgetScope {
+    // The budget is shared by all the flows of the node
+    NODE,
+    // Every flow has its own budget
+    FLOW
+}
@@ -0,0 +1,20 @@
+package com.mulesoft.ot.api;
+
+import io.opentelemetry.api.trace.StatusCode;
+
+/**
+ * Span status that can be set through the set-span-status operation
+ */
+public enum SpanStatus {
+    UNSET(StatusCode.UNSET), OK(StatusCode.OK), ERROR(StatusCode.ERROR);
+
+    private final StatusCode statusCode;
+
+    SpanStatus(StatusCode statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public StatusCode getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,11 @@
+package com.mulesoft.ot.api;
+
+/**
+ * Span updated by the connector operations
+ */
+public enum SpanTarget {
+    // Span of the flow that executes the operation
+    CURRENT,
+    // Span of the root flow of the transaction
+    ROOT
+}
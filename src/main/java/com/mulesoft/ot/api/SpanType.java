@@ -0,0 +1,21 @@
+package com.mulesoft.ot.api;
+
+import io.opentelemetry.api.trace.SpanKind;
+
+/**
+ * Kind of the span created by the span scope
+ */
+public enum SpanType {
+    INTERNAL(SpanKind.INTERNAL), SERVER(SpanKind.SERVER), CLIENT(SpanKind.CLIENT), PRODUCER(
+            SpanKind.PRODUCER), CONSUMER(SpanKind.CONSUMER);
+
+    private final SpanKind spanKind;
+
+    SpanType(SpanKind spanKind) {
+        this.spanKind = spanKind;
+    }
+
+    public SpanKind getSpanKind() {
+        return spanKind;
+    }
+}
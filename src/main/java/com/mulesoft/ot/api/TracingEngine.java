@@ -0,0 +1,11 @@
+package com.mulesoft.ot.api;
+
+/**
+ * How the connector observes the processors of the flows
+ */
+public enum TracingEngine {
+    // Server notifications of the processors, correlated through the trace vault
+    NOTIFICATIONS,
+    // Processor interceptor, the span starts and ends around the processor
+    INTERCEPTOR
+}
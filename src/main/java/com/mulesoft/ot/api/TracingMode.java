@@ -0,0 +1,11 @@
+package com.mulesoft.ot.api;
+
+/**
+ * How the connector instruments the application
+ */
+public enum TracingMode {
+    // Spans for the flows and processors, exported to the collector
+    TRACING,
+    // Latency histograms per processor location, without spans or exports
+    PROFILING
+}
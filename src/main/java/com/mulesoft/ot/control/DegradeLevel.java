@@ -0,0 +1,24 @@
+package com.mulesoft.ot.control;
+
+/**
+ * Levels of tracing applied by the {@link OverheadGovernor}, from the most to
+ * the least expensive
+ */
+public enum DegradeLevel {
+    // Flow and processor spans
+    FULL,
+    // Only the span of the root flow of every transaction
+    ROOT_ONLY,
+    // Root spans of a fraction of the transactions
+    SAMPLED_ROOT_ONLY,
+    // No traces
+    OFF;
+
+    public DegradeLevel down() {
+        return this == OFF ? OFF : values()[ordinal() + 1];
+    }
+
+    public DegradeLevel up() {
+        return this == FULL ? FULL : values()[ordinal() - 1];
+    }
+}
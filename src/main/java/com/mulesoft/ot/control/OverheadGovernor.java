@@ -0,0 +1,175 @@
+package com.mulesoft.ot.control;
+
+import com.mulesoft.ot.export.ExportQueue;
+import com.mulesoft.ot.tracevault.TraceVault;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker of the tracing overhead.
+ *
+ * <p>
+ * Every interval it checks the time spent in the notification handlers per
+ * event, the open transactions of the trace vault, the fill of the export
+ * queue and the time spent in GC. When a threshold is crossed the
+ * {@link DegradeLevel} steps down one level. It steps up one level after
+ * {@value #CALM_INTERVALS} consecutive intervals where every value is under
+ * half of its threshold.
+ */
+public class OverheadGovernor {
+
+    private static final Logger log = LoggerFactory.getLogger(OverheadGovernor.class);
+    private static final AttributeKey<String> LEVEL = AttributeKey.stringKey("level");
+
+    private static final long INTERVAL_SECONDS = 5;
+    private static final int CALM_INTERVALS = 3;
+    private static final double MAX_EXPORT_QUEUE_FILL = 0.8;
+    // Fraction of a threshold under which the pressure is considered cleared
+    private static final double RECOVERY_FACTOR = 0.5;
+
+    private final TracingControlsManager controls;
+    private final TraceVault traceVault;
+    private final long maxHandlerNanos;
+    private final int maxTransactions;
+    private final double maxGcFraction;
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final LongAdder handlerNanos = new LongAdder();
+    private final LongAdder handlerEvents = new LongAdder();
+    private final LongAdder levelChanges = new LongAdder();
+    private volatile ExportQueue exportQueue;
+
+    private ScheduledExecutorService executor;
+    private long lastGcMillis;
+    private long lastCheck;
+    private int calmIntervals;
+
+    /**
+     * @param maxHandlerMicros
+     *            average microseconds spent by the handlers per event
+     * @param maxTransactions
+     *            open transactions in the trace vault
+     * @param maxGcPercentage
+     *            percentage of the interval spent in GC
+     */
+    public OverheadGovernor(TracingControlsManager controls, TraceVault traceVault, long maxHandlerMicros,
+            int maxTransactions, int maxGcPercentage) {
+        this.controls = controls;
+        this.traceVault = traceVault;
+        this.maxHandlerNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, maxHandlerMicros));
+        this.maxTransactions = Math.max(1, maxTransactions);
+        this.maxGcFraction = Math.max(1, maxGcPercentage) / 100.0;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        lastGcMillis = gcMillis();
+        lastCheck = System.nanoTime();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "otel-overhead-governor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Time spent by a handler on one event
+     */
+    public void recordHandler(long nanos) {
+        handlerNanos.add(nanos);
+        handlerEvents.increment();
+    }
+
+    public void setExportQueue(ExportQueue exportQueue) {
+        this.exportQueue = exportQueue;
+    }
+
+    /**
+     * Registers the level in use and the number of level changes
+     */
+    public void register(Meter meter) {
+        meter.gaugeBuilder("mule.otel.degrade.level").ofLongs()
+                .setDescription("Tracing level, 0 full, 1 root only, 2 sampled root only, 3 off").setUnit("1")
+                .buildWithCallback(measurement -> {
+                    DegradeLevel level = controls.get().getDegradeLevel();
+                    measurement.record(level.ordinal(), Attributes.of(LEVEL, level.name()));
+                });
+        meter.counterBuilder("mule.otel.degrade.changes").setDescription("Changes of the tracing level")
+                .setUnit("1").buildWithCallback(measurement -> measurement.record(levelChanges.sum()));
+    }
+
+    private void check() {
+        try {
+            long now = System.nanoTime();
+            long events = handlerEvents.sumThenReset();
+            long nanos = handlerNanos.sumThenReset();
+            long gc = gcMillis();
+            double handler = events == 0 ? 0 : (double) nanos / events / maxHandlerNanos;
+            double transactions = (double) traceVault.getTransactionCount() / maxTransactions;
+            double gcTime = (double) (gc - lastGcMillis)
+                    / Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastCheck)) / maxGcFraction;
+            ExportQueue queue = exportQueue;
+            double queueFill = queue == null
+                    ? 0
+                    : (double) queue.getQueueSize() / queue.getCapacity() / MAX_EXPORT_QUEUE_FILL;
+            lastGcMillis = gc;
+            lastCheck = now;
+
+            // Every value is relative to its threshold, 1 or more is pressure
+            double pressure = Math.max(Math.max(handler, transactions), Math.max(gcTime, queueFill));
+            DegradeLevel level = controls.get().getDegradeLevel();
+            if (pressure >= 1) {
+                calmIntervals = 0;
+                if (level != DegradeLevel.OFF) {
+                    change(level, level.down(), String.format(
+                            "handler: %.2f, transactions: %.2f, gc: %.2f, export queue: %.2f", handler,
+                            transactions, gcTime, queueFill));
+                }
+            } else if (pressure < RECOVERY_FACTOR && level != DegradeLevel.FULL) {
+                if (++calmIntervals >= CALM_INTERVALS) {
+                    calmIntervals = 0;
+                    change(level, level.up(), "pressure cleared");
+                }
+            } else {
+                calmIntervals = 0;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Overhead check failed", e);
+        }
+    }
+
+    private void change(DegradeLevel from, DegradeLevel to, String reason) {
+        controls.update(current -> current.withDegradeLevel(to));
+        levelChanges.increment();
+        log.warn("Tracing level changed from {} to {}, {}", from, to, reason);
+    }
+
+    private long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+}
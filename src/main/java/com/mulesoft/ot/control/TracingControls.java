@@ -0,0 +1,223 @@
+package com.mulesoft.ot.control;
+
+import com.mulesoft.ot.Constants;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the controls that can change while the application
+ * runs. A change creates a new snapshot, see {@link TracingControlsManager}.
+ */
+public final class TracingControls {
+
+    public static final String ENABLED = "tracing.enabled";
+    public static final String LITE_MODE = "tracing.liteMode";
+    public static final String TRACED_NAMESPACES = "tracing.tracedNamespaces";
+    public static final String INTERNAL_SPAN_NAMESPACES = "tracing.internalSpanNamespaces";
+    public static final String CAPTURE_HTTP_HEADERS = "tracing.captureHttpHeaders";
+    public static final String SAMPLING_TRACES_PER_SECOND = "tracing.samplingTracesPerSecond";
+    public static final String DEGRADE_LEVEL = "tracing.degradeLevel";
+
+    private final boolean enabled;
+    private final boolean liteMode;
+    private final Set<String> tracedNamespaces;
+    private final Set<String> internalSpanNamespaces;
+    private final boolean captureHttpHeaders;
+    private final double samplingTracesPerSecond;
+    private final DegradeLevel degradeLevel;
+
+    /**
+     * @param enabled
+     *            traces are created
+     * @param liteMode
+     *            only the flow spans are created, without processor spans
+     * @param tracedNamespaces
+     *            namespaces of the processors traced, separated by commas, empty
+     *            traces every supported processor
+     * @param internalSpanNamespaces
+     *            namespaces without dedicated support whose processors get an
+     *            INTERNAL span, separated by commas, empty for none
+     * @param captureHttpHeaders
+     *            the HTTP headers are recorded as attributes
+     * @param samplingTracesPerSecond
+     *            traces per second of the adaptive sampler, 0 uses the sampler
+     *            configured in the SDK
+     */
+    public TracingControls(boolean enabled, boolean liteMode, String tracedNamespaces,
+            String internalSpanNamespaces, boolean captureHttpHeaders, double samplingTracesPerSecond) {
+        this(enabled, liteMode, parseNamespaces(tracedNamespaces), parseNamespaces(internalSpanNamespaces),
+                captureHttpHeaders, samplingTracesPerSecond, DegradeLevel.FULL);
+    }
+
+    private TracingControls(boolean enabled, boolean liteMode, Set<String> tracedNamespaces,
+            Set<String> internalSpanNamespaces, boolean captureHttpHeaders, double samplingTracesPerSecond,
+            DegradeLevel degradeLevel) {
+        this.enabled = enabled;
+        this.liteMode = liteMode;
+        this.tracedNamespaces = tracedNamespaces;
+        this.internalSpanNamespaces = internalSpanNamespaces;
+        this.captureHttpHeaders = captureHttpHeaders;
+        this.samplingTracesPerSecond = Math.max(0, samplingTracesPerSecond);
+        this.degradeLevel = degradeLevel;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isLiteMode() {
+        return liteMode;
+    }
+
+    public Set<String> getTracedNamespaces() {
+        return tracedNamespaces;
+    }
+
+    public Set<String> getInternalSpanNamespaces() {
+        return internalSpanNamespaces;
+    }
+
+    public boolean isCaptureHttpHeaders() {
+        return captureHttpHeaders;
+    }
+
+    public double getSamplingTracesPerSecond() {
+        return samplingTracesPerSecond;
+    }
+
+    /**
+     * Level applied by the overhead governor, independent of the other controls
+     */
+    public DegradeLevel getDegradeLevel() {
+        return degradeLevel;
+    }
+
+    /**
+     * Transactions are traced
+     */
+    public boolean tracesTransactions() {
+        return enabled && degradeLevel != DegradeLevel.OFF;
+    }
+
+    /**
+     * Nested flows get a span of their own
+     */
+    public boolean tracesNestedFlows() {
+        return enabled && degradeLevel == DegradeLevel.FULL;
+    }
+
+    /**
+     * A span is created for the processors of the namespace
+     */
+    public boolean tracesProcessor(String namespace) {
+        return enabled && !liteMode && degradeLevel == DegradeLevel.FULL && (tracedNamespaces.isEmpty()
+                || (namespace != null && tracedNamespaces.contains(namespace.toLowerCase())));
+    }
+
+    /**
+     * The processors of the namespace without a dedicated component get an
+     * INTERNAL span, the operations of the connector never do
+     */
+    public boolean tracesGenericProcessor(String namespace) {
+        return namespace != null && !Constants.CONNECTOR_NAMESPACE.equalsIgnoreCase(namespace)
+                && internalSpanNamespaces.contains(namespace.toLowerCase());
+    }
+
+    public TracingControls withEnabled(boolean enabled) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, internalSpanNamespaces, captureHttpHeaders,
+                samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withLiteMode(boolean liteMode) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, internalSpanNamespaces, captureHttpHeaders,
+                samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withTracedNamespaces(String tracedNamespaces) {
+        return new TracingControls(enabled, liteMode, parseNamespaces(tracedNamespaces), internalSpanNamespaces,
+                captureHttpHeaders, samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withInternalSpanNamespaces(String internalSpanNamespaces) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, parseNamespaces(internalSpanNamespaces),
+                captureHttpHeaders, samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withCaptureHttpHeaders(boolean captureHttpHeaders) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, internalSpanNamespaces, captureHttpHeaders,
+                samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withSamplingTracesPerSecond(double samplingTracesPerSecond) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, internalSpanNamespaces, captureHttpHeaders,
+                samplingTracesPerSecond, degradeLevel);
+    }
+
+    public TracingControls withDegradeLevel(DegradeLevel degradeLevel) {
+        return new TracingControls(enabled, liteMode, tracedNamespaces, internalSpanNamespaces, captureHttpHeaders,
+                samplingTracesPerSecond, degradeLevel);
+    }
+
+    /**
+     * Controls with the values present in the properties, the missing ones are
+     * kept
+     *
+     * @throws IllegalArgumentException
+     *             when a number is not valid
+     */
+    public TracingControls withProperties(Properties properties) {
+        TracingControls controls = this;
+        if (properties.containsKey(ENABLED)) {
+            controls = controls.withEnabled(Boolean.parseBoolean(properties.getProperty(ENABLED).trim()));
+        }
+        if (properties.containsKey(LITE_MODE)) {
+            controls = controls.withLiteMode(Boolean.parseBoolean(properties.getProperty(LITE_MODE).trim()));
+        }
+        if (properties.containsKey(TRACED_NAMESPACES)) {
+            controls = controls.withTracedNamespaces(properties.getProperty(TRACED_NAMESPACES));
+        }
+        if (properties.containsKey(INTERNAL_SPAN_NAMESPACES)) {
+            controls = controls.withInternalSpanNamespaces(properties.getProperty(INTERNAL_SPAN_NAMESPACES));
+        }
+        if (properties.containsKey(CAPTURE_HTTP_HEADERS)) {
+            controls = controls
+                    .withCaptureHttpHeaders(Boolean.parseBoolean(properties.getProperty(CAPTURE_HTTP_HEADERS).trim()));
+        }
+        if (properties.containsKey(SAMPLING_TRACES_PER_SECOND)) {
+            controls = controls.withSamplingTracesPerSecond(
+                    Double.parseDouble(properties.getProperty(SAMPLING_TRACES_PER_SECOND).trim()));
+        }
+        return controls;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(ENABLED, enabled);
+        map.put(LITE_MODE, liteMode);
+        map.put(TRACED_NAMESPACES, String.join(",", tracedNamespaces));
+        map.put(INTERNAL_SPAN_NAMESPACES, String.join(",", internalSpanNamespaces));
+        map.put(CAPTURE_HTTP_HEADERS, captureHttpHeaders);
+        map.put(SAMPLING_TRACES_PER_SECOND, samplingTracesPerSecond);
+        map.put(DEGRADE_LEVEL, degradeLevel.name());
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "TracingControls" + toMap();
+    }
+
+    private static Set<String> parseNamespaces(String namespaces) {
+        if (namespaces == null || namespaces.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(Arrays.stream(namespaces.split(",")).map(String::trim)
+                .filter(namespace -> !namespace.isEmpty()).map(String::toLowerCase).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,74 @@
+package com.mulesoft.ot.control;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a local properties file to the {@link TracingControlsManager} every
+ * time the file changes. The keys are the ones of {@link TracingControls}, the
+ * missing keys keep their value.
+ */
+public class TracingControlsFileWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(TracingControlsFileWatcher.class);
+    private static final long POLL_SECONDS = 2;
+
+    private final Path file;
+    private final TracingControlsManager manager;
+    private ScheduledExecutorService executor;
+    private long lastModified = -1;
+
+    public TracingControlsFileWatcher(Path file, TracingControlsManager manager) {
+        this.file = file;
+        this.manager = manager;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "otel-tracing-controls");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0, POLL_SECONDS, TimeUnit.SECONDS);
+        log.debug("Watching tracing controls file: {}", file);
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void poll() {
+        try {
+            if (!Files.isRegularFile(file)) {
+                return;
+            }
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+            lastModified = modified;
+            Properties properties = new Properties();
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+            }
+            manager.update(current -> current.withProperties(properties));
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Tracing controls file {} could not be applied: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.mulesoft.ot.control;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the current {@link TracingControls}. The hot path reads the snapshot
+ * with one volatile load, a change swaps the whole snapshot.
+ */
+public class TracingControlsManager implements TracingControlsManagerMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TracingControlsManager.class);
+    private static final TracingControlsManager instance = new TracingControlsManager();
+
+    private final AtomicReference<TracingControls> controls = new AtomicReference<>(
+            new TracingControls(true, false, null, null, true, 0));
+
+    public static TracingControlsManager getInstance() {
+        return instance;
+    }
+
+    public TracingControls get() {
+        return controls.get();
+    }
+
+    public void set(TracingControls tracingControls) {
+        controls.set(tracingControls);
+        log.info("Tracing controls: {}", tracingControls);
+    }
+
+    public TracingControls update(UnaryOperator<TracingControls> change) {
+        TracingControls updated = controls.updateAndGet(change);
+        log.info("Tracing controls: {}", updated);
+        return updated;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return get().isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        update(current -> current.withEnabled(enabled));
+    }
+
+    @Override
+    public boolean isLiteMode() {
+        return get().isLiteMode();
+    }
+
+    @Override
+    public void setLiteMode(boolean liteMode) {
+        update(current -> current.withLiteMode(liteMode));
+    }
+
+    @Override
+    public String getTracedNamespaces() {
+        return String.join(",", get().getTracedNamespaces());
+    }
+
+    @Override
+    public void setTracedNamespaces(String tracedNamespaces) {
+        update(current -> current.withTracedNamespaces(tracedNamespaces));
+    }
+
+    @Override
+    public String getInternalSpanNamespaces() {
+        return String.join(",", get().getInternalSpanNamespaces());
+    }
+
+    @Override
+    public void setInternalSpanNamespaces(String internalSpanNamespaces) {
+        update(current -> current.withInternalSpanNamespaces(internalSpanNamespaces));
+    }
+
+    @Override
+    public boolean isCaptureHttpHeaders() {
+        return get().isCaptureHttpHeaders();
+    }
+
+    @Override
+    public void setCaptureHttpHeaders(boolean captureHttpHeaders) {
+        update(current -> current.withCaptureHttpHeaders(captureHttpHeaders));
+    }
+
+    @Override
+    public double getSamplingTracesPerSecond() {
+        return get().getSamplingTracesPerSecond();
+    }
+
+    @Override
+    public void setSamplingTracesPerSecond(double samplingTracesPerSecond) {
+        update(current -> current.withSamplingTracesPerSecond(samplingTracesPerSecond));
+    }
+}
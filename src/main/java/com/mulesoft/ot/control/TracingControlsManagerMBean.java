@@ -0,0 +1,40 @@
+package com.mulesoft.ot.control;
+
+/**
+ * JMX interface of the {@link TracingControlsManager}, every change applies to
+ * the following events
+ */
+public interface TracingControlsManagerMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    boolean isLiteMode();
+
+    void setLiteMode(boolean liteMode);
+
+    /**
+     * Namespaces of the processors traced, separated by commas, empty traces every
+     * supported processor
+     */
+    String getTracedNamespaces();
+
+    void setTracedNamespaces(String tracedNamespaces);
+
+    /**
+     * Namespaces without dedicated support whose processors get an INTERNAL span,
+     * separated by commas
+     */
+    String getInternalSpanNamespaces();
+
+    void setInternalSpanNamespaces(String internalSpanNamespaces);
+
+    boolean isCaptureHttpHeaders();
+
+    void setCaptureHttpHeaders(boolean captureHttpHeaders);
+
+    double getSamplingTracesPerSecond();
+
+    void setSamplingTracesPerSecond(double samplingTracesPerSecond);
+}
@@ -0,0 +1,146 @@
+package com.mulesoft.ot.export;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Additional destination of the spans, with an export queue of its own.
+ *
+ * <p>
+ * A destination is written as name=exporter[@endpoint][;option=value...], and
+ * the destinations are separated by commas:
+ *
+ * <pre>
+ * backup=otlp-http@https://collector.eu:4318/v1/traces;queueSize=4096, local=logging
+ * </pre>
+ *
+ * The exporters are otlp, otlp-grpc, otlp-http, otlp-direct (low allocation
+ * OTLP/HTTP) and logging. The options are
+ * queueSize and reservedPercentage, the missing ones take the values of the
+ * primary export queue.
+ */
+public final class ExportDestination {
+
+    public static final String OTLP = "otlp";
+    public static final String OTLP_GRPC = "otlp-grpc";
+    public static final String OTLP_HTTP = "otlp-http";
+    public static final String OTLP_DIRECT = "otlp-direct";
+    public static final String LOGGING = "logging";
+
+    private static final Set<String> EXPORTERS = new HashSet<>(
+            Arrays.asList(OTLP, OTLP_GRPC, OTLP_HTTP, OTLP_DIRECT, LOGGING));
+    private static final String QUEUE_SIZE = "queuesize";
+    private static final String RESERVED_PERCENTAGE = "reservedpercentage";
+
+    private final String name;
+    private final String exporter;
+    private final String endpoint;
+    private final int queueSize;
+    private final int reservedPercentage;
+
+    private ExportDestination(String name, String exporter, String endpoint, int queueSize,
+            int reservedPercentage) {
+        this.name = name;
+        this.exporter = exporter;
+        this.endpoint = endpoint;
+        this.queueSize = queueSize;
+        this.reservedPercentage = reservedPercentage;
+    }
+
+    /**
+     * @param destinations
+     *            destinations separated by commas, null or empty for none
+     * @param defaultQueueSize
+     *            queue size of the destinations without queueSize
+     * @param defaultReservedPercentage
+     *            reserved percentage of the destinations without
+     *            reservedPercentage
+     * @throws IllegalArgumentException
+     *             when a destination is not valid or a name is repeated
+     */
+    public static List<ExportDestination> parse(String destinations, int defaultQueueSize,
+            int defaultReservedPercentage) {
+        if (destinations == null || destinations.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ExportDestination> parsed = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String destination : destinations.split(",")) {
+            if (destination.trim().isEmpty()) {
+                continue;
+            }
+            ExportDestination current = parseOne(destination.trim(), defaultQueueSize, defaultReservedPercentage);
+            if (!names.add(current.name)) {
+                throw new IllegalArgumentException("Export destination " + current.name + " is repeated");
+            }
+            parsed.add(current);
+        }
+        return parsed;
+    }
+
+    private static ExportDestination parseOne(String destination, int queueSize, int reservedPercentage) {
+        String[] parts = destination.split(";");
+        int equals = parts[0].indexOf('=');
+        if (equals <= 0) {
+            throw new IllegalArgumentException("Export destination without name: " + destination);
+        }
+        String name = parts[0].substring(0, equals).trim();
+        String target = parts[0].substring(equals + 1).trim();
+        int at = target.indexOf('@');
+        String exporter = (at < 0 ? target : target.substring(0, at)).trim().toLowerCase(Locale.ROOT);
+        String endpoint = at < 0 ? null : target.substring(at + 1).trim();
+        if (!EXPORTERS.contains(exporter)) {
+            throw new IllegalArgumentException("Unknown exporter " + exporter + " in export destination " + name);
+        }
+        for (int i = 1; i < parts.length; i++) {
+            String[] option = parts[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Option without value in export destination " + name);
+            }
+            String key = option[0].trim().toLowerCase(Locale.ROOT);
+            if (QUEUE_SIZE.equals(key)) {
+                queueSize = Integer.parseInt(option[1].trim());
+            } else if (RESERVED_PERCENTAGE.equals(key)) {
+                reservedPercentage = Integer.parseInt(option[1].trim());
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option[0] + " in export destination " + name);
+            }
+        }
+        return new ExportDestination(name, exporter, endpoint == null || endpoint.isEmpty() ? null : endpoint,
+                queueSize, reservedPercentage);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getExporter() {
+        return exporter;
+    }
+
+    /**
+     * @return the endpoint, null to use the one of the OTLP configuration
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getReservedPercentage() {
+        return reservedPercentage;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + exporter + (endpoint != null ? "@" + endpoint : "") + ";queueSize=" + queueSize
+                + ";reservedPercentage=" + reservedPercentage;
+    }
+}
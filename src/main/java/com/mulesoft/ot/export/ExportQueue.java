@@ -0,0 +1,18 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.metrics.Meter;
+
+/**
+ * Bounded queue of spans waiting to be exported
+ */
+public interface ExportQueue {
+
+    /**
+     * Registers the metrics of the queue
+     */
+    void register(Meter meter);
+
+    int getQueueSize();
+
+    int getCapacity();
+}
@@ -0,0 +1,88 @@
+package com.mulesoft.ot.export;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Posts protobuf OTLP requests to an OTLP/HTTP endpoint with a fixed length
+ * body written by the caller. The connections are kept alive between requests
+ * by the keep-alive cache of HttpURLConnection.
+ */
+final class OtlpHttpClient {
+
+    private static final String CONTENT_TYPE = "application/x-protobuf";
+    private static final byte[] DISCARD = new byte[1024];
+
+    private final URL endpoint;
+    private final Map<String, String> headers;
+    private final int timeoutMillis;
+
+    /**
+     * Writes the body of a request
+     */
+    interface Body {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             when the endpoint is not a valid URL
+     */
+    OtlpHttpClient(String endpoint, Map<String, String> headers, Duration timeout) {
+        try {
+            this.endpoint = new URL(endpoint);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid OTLP endpoint " + endpoint, e);
+        }
+        this.headers = headers;
+        this.timeoutMillis = (int) (timeout != null ? timeout : Duration.ofSeconds(10)).toMillis();
+    }
+
+    /**
+     * @return HTTP status of the response
+     */
+    int post(int length, Body body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setFixedLengthStreamingMode(length);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            headers.forEach(connection::setRequestProperty);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                body.writeTo(outputStream);
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return status;
+        } catch (IOException e) {
+            // Only a failed connection is closed, the others stay in the keep-alive cache
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    // The response is read to the end and closed, without disconnect, so the
+    // connection is reused by the next request
+    private static void drain(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+        try (InputStream stream = inputStream) {
+            while (stream.read(DISCARD) >= 0) {
+                // discarded
+            }
+        }
+    }
+
+    URL getEndpoint() {
+        return endpoint;
+    }
+}
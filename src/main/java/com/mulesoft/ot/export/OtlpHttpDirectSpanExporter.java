@@ -0,0 +1,73 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * OTLP/HTTP span exporter with low allocation.
+ *
+ * <p>
+ * The batch is encoded by an {@link OtlpProtoEncoder} into its reused buffer
+ * and written from there to the connection, with a fixed length body. The
+ * exports are serialized, it is meant for the single worker of an export
+ * queue.
+ */
+public class OtlpHttpDirectSpanExporter implements SpanExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(OtlpHttpDirectSpanExporter.class);
+
+    private final OtlpHttpClient client;
+    private final OtlpProtoEncoder encoder = new OtlpProtoEncoder();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    /**
+     * @param endpoint
+     *            URL of the traces, usually ending in /v1/traces
+     * @throws IllegalArgumentException
+     *             when the endpoint is not a valid URL
+     */
+    public OtlpHttpDirectSpanExporter(String endpoint, Map<String, String> headers, Duration timeout) {
+        this.client = new OtlpHttpClient(endpoint, headers, timeout);
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        if (shutdown.get()) {
+            return CompletableResultCode.ofFailure();
+        }
+        try {
+            int status = client.post(encoder.encode(spans), encoder::writeTo);
+            if (status >= 200 && status < 300) {
+                return CompletableResultCode.ofSuccess();
+            }
+            log.debug("OTLP export failed, endpoint: {}, status: {}, spans: {}", client.getEndpoint(), status,
+                    spans.size());
+            return CompletableResultCode.ofFailure();
+        } catch (IOException | RuntimeException e) {
+            log.debug("OTLP export failed, endpoint: " + client.getEndpoint(), e);
+            return CompletableResultCode.ofFailure();
+        } finally {
+            encoder.reset();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        shutdown.set(true);
+        return CompletableResultCode.ofSuccess();
+    }
+}
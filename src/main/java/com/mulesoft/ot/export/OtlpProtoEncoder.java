@@ -0,0 +1,453 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Encodes the spans as an OTLP ExportTraceServiceRequest in protobuf format.
+ *
+ * <p>
+ * The message is written straight into a byte array reused from one batch to
+ * the next, without intermediate marshalers. A nested message reserves one
+ * byte for its length and is shifted when the length needs more. The UTF-8
+ * encodings of the names, the attribute keys and the resource are cached for
+ * the batch, the values are encoded in place. Trace and span ids are decoded
+ * from their hex form into the buffer.
+ *
+ * <p>
+ * Not thread safe, every exporter worker has its own encoder.
+ */
+public final class OtlpProtoEncoder implements BiConsumer<AttributeKey<?>, Object> {
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH = 2;
+
+    // Field numbers of opentelemetry/proto/trace/v1/trace.proto and common.proto
+    private static final int REQUEST_RESOURCE_SPANS = 1;
+    private static final int RESOURCE_SPANS_RESOURCE = 1;
+    private static final int RESOURCE_SPANS_SCOPE_SPANS = 2;
+    private static final int RESOURCE_SPANS_SCHEMA_URL = 3;
+    private static final int RESOURCE_ATTRIBUTES = 1;
+    private static final int SCOPE_SPANS_SCOPE = 1;
+    private static final int SCOPE_SPANS_SPANS = 2;
+    private static final int SCOPE_SPANS_SCHEMA_URL = 3;
+    private static final int SCOPE_NAME = 1;
+    private static final int SCOPE_VERSION = 2;
+    private static final int SPAN_TRACE_ID = 1;
+    private static final int SPAN_SPAN_ID = 2;
+    private static final int SPAN_TRACE_STATE = 3;
+    private static final int SPAN_PARENT_SPAN_ID = 4;
+    private static final int SPAN_NAME = 5;
+    private static final int SPAN_KIND = 6;
+    private static final int SPAN_START_TIME = 7;
+    private static final int SPAN_END_TIME = 8;
+    private static final int SPAN_ATTRIBUTES = 9;
+    private static final int SPAN_DROPPED_ATTRIBUTES = 10;
+    private static final int SPAN_EVENTS = 11;
+    private static final int SPAN_DROPPED_EVENTS = 12;
+    private static final int SPAN_LINKS = 13;
+    private static final int SPAN_DROPPED_LINKS = 14;
+    private static final int SPAN_STATUS = 15;
+    private static final int EVENT_TIME = 1;
+    private static final int EVENT_NAME = 2;
+    private static final int EVENT_ATTRIBUTES = 3;
+    private static final int EVENT_DROPPED_ATTRIBUTES = 4;
+    private static final int LINK_TRACE_ID = 1;
+    private static final int LINK_SPAN_ID = 2;
+    private static final int LINK_TRACE_STATE = 3;
+    private static final int LINK_ATTRIBUTES = 4;
+    private static final int LINK_DROPPED_ATTRIBUTES = 5;
+    private static final int STATUS_MESSAGE = 2;
+    private static final int STATUS_CODE = 3;
+    private static final int KEY_VALUE_KEY = 1;
+    private static final int KEY_VALUE_VALUE = 2;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_BOOL = 2;
+    private static final int VALUE_INT = 3;
+    private static final int VALUE_DOUBLE = 4;
+    private static final int VALUE_ARRAY = 5;
+    private static final int ARRAY_VALUES = 1;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    // A buffer grown above this size by a large batch is not kept for the next one
+    private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+    private static final int MAX_CACHED_STRINGS = 4096;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int position;
+    private final Map<String, byte[]> strings = new HashMap<>();
+    private int attributeField;
+
+    /**
+     * Encodes the batch, the message stays in the buffer until the next call
+     *
+     * @return size of the message in bytes
+     */
+    public int encode(Collection<SpanData> spans) {
+        position = 0;
+        for (Map.Entry<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> resource : group(spans)
+                .entrySet()) {
+            int resourceSpans = beginMessage(REQUEST_RESOURCE_SPANS);
+            int resourceMessage = beginMessage(RESOURCE_SPANS_RESOURCE);
+            writeAttributes(RESOURCE_ATTRIBUTES, resource.getKey().getAttributes());
+            endMessage(resourceMessage);
+            for (Map.Entry<InstrumentationScopeInfo, List<SpanData>> scope : resource.getValue().entrySet()) {
+                int scopeSpans = beginMessage(RESOURCE_SPANS_SCOPE_SPANS);
+                int scopeMessage = beginMessage(SCOPE_SPANS_SCOPE);
+                writeCachedString(SCOPE_NAME, scope.getKey().getName());
+                writeCachedString(SCOPE_VERSION, scope.getKey().getVersion());
+                endMessage(scopeMessage);
+                for (SpanData span : scope.getValue()) {
+                    writeSpan(span);
+                }
+                writeCachedString(SCOPE_SPANS_SCHEMA_URL, scope.getKey().getSchemaUrl());
+                endMessage(scopeSpans);
+            }
+            writeCachedString(RESOURCE_SPANS_SCHEMA_URL, resource.getKey().getSchemaUrl());
+            endMessage(resourceSpans);
+        }
+        return position;
+    }
+
+    /**
+     * Writes the message of the last {@link #encode(Collection)}
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, position);
+    }
+
+    /**
+     * Clears the strings cached for the batch, and the buffer when it grew too
+     * much
+     */
+    public void reset() {
+        strings.clear();
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        position = 0;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Copy of the message of the last {@link #encode(Collection)}
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static Map<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> group(Collection<SpanData> spans) {
+        Map<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> grouped = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            grouped.computeIfAbsent(span.getResource(), resource -> new LinkedHashMap<>())
+                    .computeIfAbsent(span.getInstrumentationScopeInfo(), scope -> new ArrayList<>()).add(span);
+        }
+        return grouped;
+    }
+
+    private void writeSpan(SpanData span) {
+        int spanMessage = beginMessage(SCOPE_SPANS_SPANS);
+        writeHexBytes(SPAN_TRACE_ID, span.getTraceId());
+        writeHexBytes(SPAN_SPAN_ID, span.getSpanId());
+        writeTraceState(SPAN_TRACE_STATE, span.getSpanContext().getTraceState());
+        if (span.getParentSpanContext().isValid()) {
+            writeHexBytes(SPAN_PARENT_SPAN_ID, span.getParentSpanId());
+        }
+        writeCachedString(SPAN_NAME, span.getName());
+        // SpanKind of the proto starts with UNSPECIFIED
+        writeVarintField(SPAN_KIND, span.getKind().ordinal() + 1);
+        writeFixed64Field(SPAN_START_TIME, span.getStartEpochNanos());
+        writeFixed64Field(SPAN_END_TIME, span.getEndEpochNanos());
+        writeAttributes(SPAN_ATTRIBUTES, span.getAttributes());
+        writeVarintField(SPAN_DROPPED_ATTRIBUTES, span.getTotalAttributeCount() - span.getAttributes().size());
+        for (EventData event : span.getEvents()) {
+            int eventMessage = beginMessage(SPAN_EVENTS);
+            writeFixed64Field(EVENT_TIME, event.getEpochNanos());
+            writeCachedString(EVENT_NAME, event.getName());
+            writeAttributes(EVENT_ATTRIBUTES, event.getAttributes());
+            writeVarintField(EVENT_DROPPED_ATTRIBUTES,
+                    event.getTotalAttributeCount() - event.getAttributes().size());
+            endMessage(eventMessage);
+        }
+        writeVarintField(SPAN_DROPPED_EVENTS, span.getTotalRecordedEvents() - span.getEvents().size());
+        for (LinkData link : span.getLinks()) {
+            SpanContext context = link.getSpanContext();
+            int linkMessage = beginMessage(SPAN_LINKS);
+            writeHexBytes(LINK_TRACE_ID, context.getTraceId());
+            writeHexBytes(LINK_SPAN_ID, context.getSpanId());
+            writeTraceState(LINK_TRACE_STATE, context.getTraceState());
+            writeAttributes(LINK_ATTRIBUTES, link.getAttributes());
+            writeVarintField(LINK_DROPPED_ATTRIBUTES, link.getTotalAttributeCount() - link.getAttributes().size());
+            endMessage(linkMessage);
+        }
+        writeVarintField(SPAN_DROPPED_LINKS, span.getTotalRecordedLinks() - span.getLinks().size());
+        StatusData status = span.getStatus();
+        int statusMessage = beginMessage(SPAN_STATUS);
+        writeString(STATUS_MESSAGE, status.getDescription());
+        // StatusCode of the proto is UNSET, OK, ERROR like the API
+        writeVarintField(STATUS_CODE, status.getStatusCode().ordinal());
+        endMessage(statusMessage);
+        endMessage(spanMessage);
+    }
+
+    private void writeAttributes(int field, Attributes attributes) {
+        attributeField = field;
+        attributes.forEach(this);
+    }
+
+    /**
+     * Writes one attribute as a KeyValue in the field of the attributes being
+     * written. The value of an AnyValue is a oneof, it is written even when it
+     * is the default value, false, 0 or the empty string.
+     */
+    @Override
+    public void accept(AttributeKey<?> key, Object value) {
+        int keyValue = beginMessage(attributeField);
+        writeCachedString(KEY_VALUE_KEY, key.getKey());
+        int anyValue = beginMessage(KEY_VALUE_VALUE);
+        switch (key.getType()) {
+            case STRING :
+                writeStringValue(VALUE_STRING, (String) value);
+                break;
+            case BOOLEAN :
+                writeVarintValue(VALUE_BOOL, (Boolean) value ? 1 : 0);
+                break;
+            case LONG :
+                writeVarintValue(VALUE_INT, (Long) value);
+                break;
+            case DOUBLE :
+                writeFixed64Value(VALUE_DOUBLE, Double.doubleToRawLongBits((Double) value));
+                break;
+            default :
+                writeArray((List<?>) value);
+        }
+        endMessage(anyValue);
+        endMessage(keyValue);
+    }
+
+    private void writeArray(List<?> values) {
+        int array = beginMessage(VALUE_ARRAY);
+        for (Object value : values) {
+            int anyValue = beginMessage(ARRAY_VALUES);
+            if (value instanceof String) {
+                writeStringValue(VALUE_STRING, (String) value);
+            } else if (value instanceof Boolean) {
+                writeVarintValue(VALUE_BOOL, (Boolean) value ? 1 : 0);
+            } else if (value instanceof Long) {
+                writeVarintValue(VALUE_INT, (Long) value);
+            } else if (value instanceof Double) {
+                writeFixed64Value(VALUE_DOUBLE, Double.doubleToRawLongBits((Double) value));
+            }
+            endMessage(anyValue);
+        }
+        endMessage(array);
+    }
+
+    private void writeTraceState(int field, TraceState traceState) {
+        if (traceState.isEmpty()) {
+            return;
+        }
+        StringBuilder header = new StringBuilder();
+        traceState.forEach((key, value) -> {
+            if (header.length() > 0) {
+                header.append(',');
+            }
+            header.append(key).append('=').append(value);
+        });
+        writeString(field, header.toString());
+    }
+
+    // Starts a nested message, one byte is reserved for its length
+    private int beginMessage(int field) {
+        writeTag(field, WIRE_LENGTH);
+        ensure(1);
+        return position++;
+    }
+
+    private void endMessage(int lengthPosition) {
+        int length = position - lengthPosition - 1;
+        int lengthSize = varintSize(length);
+        if (lengthSize > 1) {
+            ensure(lengthSize - 1);
+            System.arraycopy(buffer, lengthPosition + 1, buffer, lengthPosition + lengthSize, length);
+            position += lengthSize - 1;
+        }
+        int end = position;
+        position = lengthPosition;
+        writeVarint(length);
+        position = end;
+    }
+
+    private void writeCachedString(int field, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] bytes = strings.get(value);
+        if (bytes == null) {
+            if (strings.size() >= MAX_CACHED_STRINGS) {
+                writeString(field, value);
+                return;
+            }
+            bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings.put(value, bytes);
+        }
+        writeTag(field, WIRE_LENGTH);
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    // The empty string is the default value of proto3 and is not written
+    private void writeString(int field, String value) {
+        if (value != null && !value.isEmpty()) {
+            writeStringValue(field, value);
+        }
+    }
+
+    // Encodes the string in place, without an intermediate array, also when it is
+    // empty
+    private void writeStringValue(int field, String value) {
+        writeTag(field, WIRE_LENGTH);
+        int length = utf8Length(value);
+        writeVarint(length);
+        ensure(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >>> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >>> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced like String.getBytes does
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >>> 12));
+                buffer[position++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void writeHexBytes(int field, String hex) {
+        int length = hex.length() / 2;
+        writeTag(field, WIRE_LENGTH);
+        writeVarint(length);
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4)
+                    | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+    }
+
+    // Zero is the default value of proto3 and is not written
+    private void writeVarintField(int field, long value) {
+        if (value != 0) {
+            writeVarintValue(field, value);
+        }
+    }
+
+    private void writeFixed64Field(int field, long value) {
+        if (value != 0) {
+            writeFixed64Value(field, value);
+        }
+    }
+
+    // The members of a oneof are written also with the default value, their
+    // presence selects the member
+    private void writeVarintValue(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+    }
+
+    private void writeFixed64Value(int field, long value) {
+        writeTag(field, WIRE_FIXED64);
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint((field << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private void ensure(int bytes) {
+        if (position + bytes > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, position + bytes)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+}
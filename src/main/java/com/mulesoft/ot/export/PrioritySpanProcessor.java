@@ -0,0 +1,370 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batch span processor with a bounded queue of two priority classes.
+ *
+ * <p>
+ * Spans with status ERROR, SERVER spans slower than the latency threshold and
+ * root spans are high priority. A share of the queue capacity is reserved for
+ * them, and when the queue is full a high priority span evicts the oldest low
+ * priority span. Drops and evictions are counted per priority class.
+ *
+ * <p>
+ * Only the worker thread exports, a flush is a request to the worker.
+ */
+public class PrioritySpanProcessor implements SpanProcessor, ExportQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(PrioritySpanProcessor.class);
+    private static final AttributeKey<String> PRIORITY = AttributeKey.stringKey("priority");
+    private static final AttributeKey<String> DESTINATION = AttributeKey.stringKey("destination");
+
+    private final String name;
+    private final SpanExporter spanExporter;
+    private final int capacity;
+    private final int lowPriorityCapacity;
+    private final long slowSpanNanos;
+    private final int maxBatchSize;
+    private final long scheduleDelayNanos;
+    private final long exportTimeoutMillis;
+
+    private final Queue<SpanData> highPriority = new ConcurrentLinkedQueue<>();
+    private final Queue<SpanData> lowPriority = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Object signal = new Object();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+    private final AtomicReference<CompletableResultCode> flushRequest = new AtomicReference<>();
+    private final Thread worker;
+
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder exportFailed = new LongAdder();
+    private final LongAdder droppedHigh = new LongAdder();
+    private final LongAdder droppedLow = new LongAdder();
+    private final LongAdder evictedLow = new LongAdder();
+
+    /**
+     * @param name
+     *            name of the destination, used for the worker thread and the
+     *            metrics
+     * @param spanExporter
+     *            exporter of the batches
+     * @param capacity
+     *            maximum number of spans in the queue
+     * @param reservedPercentage
+     *            percentage of the capacity reserved for high priority spans
+     * @param slowSpanMillis
+     *            SERVER spans with this latency or more are high priority
+     */
+    public PrioritySpanProcessor(String name, SpanExporter spanExporter, int capacity, int reservedPercentage,
+            long slowSpanMillis) {
+        this.name = name;
+        this.spanExporter = spanExporter;
+        this.capacity = Math.max(1, capacity);
+        int reserved = this.capacity * Math.min(100, Math.max(0, reservedPercentage)) / 100;
+        this.lowPriorityCapacity = this.capacity - reserved;
+        this.slowSpanNanos = TimeUnit.MILLISECONDS.toNanos(slowSpanMillis);
+        this.maxBatchSize = Math.min(512, this.capacity);
+        this.scheduleDelayNanos = TimeUnit.SECONDS.toNanos(5);
+        this.exportTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        this.worker = new Thread(this::work, "otel-export-" + name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Registers the counters of the queue
+     */
+    @Override
+    public void register(Meter meter) {
+        Attributes destination = Attributes.of(DESTINATION, name);
+        Attributes high = Attributes.of(DESTINATION, name, PRIORITY, "high");
+        Attributes low = Attributes.of(DESTINATION, name, PRIORITY, "low");
+        meter.counterBuilder("mule.otel.export.dropped").setDescription("Spans dropped by the export queue")
+                .setUnit("1").buildWithCallback(measurement -> {
+                    measurement.record(droppedHigh.sum(), high);
+                    measurement.record(droppedLow.sum() + evictedLow.sum(), low);
+                });
+        meter.counterBuilder("mule.otel.export.exported").setDescription("Spans exported").setUnit("1")
+                .buildWithCallback(measurement -> measurement.record(exported.sum(), destination));
+        meter.counterBuilder("mule.otel.export.failed").setDescription("Spans of the batches that failed to export")
+                .setUnit("1").buildWithCallback(measurement -> measurement.record(exportFailed.sum(), destination));
+        meter.gaugeBuilder("mule.otel.export.queue.size").ofLongs().setDescription("Spans waiting in the queue")
+                .setUnit("1").buildWithCallback(measurement -> measurement.record(size.get(), destination));
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (!span.getSpanContext().isSampled() || shutdown.get()) {
+            return;
+        }
+        SpanData spanData = span.toSpanData();
+        if (isHighPriority(spanData)) {
+            offerHighPriority(spanData);
+        } else {
+            offerLowPriority(spanData);
+        }
+        if (size.get() >= maxBatchSize) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private boolean isHighPriority(SpanData spanData) {
+        if (StatusCode.ERROR.equals(spanData.getStatus().getStatusCode())) {
+            return true;
+        }
+        SpanContext parent = spanData.getParentSpanContext();
+        if (!parent.isValid() || parent.isRemote()) {
+            return true;
+        }
+        return SpanKind.SERVER.equals(spanData.getKind())
+                && spanData.getEndEpochNanos() - spanData.getStartEpochNanos() >= slowSpanNanos;
+    }
+
+    private void offerHighPriority(SpanData spanData) {
+        if (reserve(capacity)) {
+            highPriority.offer(spanData);
+            return;
+        }
+        // Queue full, the high priority span takes the place of a low priority one
+        if (lowPriority.poll() != null) {
+            evictedLow.increment();
+            highPriority.offer(spanData);
+            return;
+        }
+        droppedHigh.increment();
+    }
+
+    private void offerLowPriority(SpanData spanData) {
+        if (reserve(lowPriorityCapacity)) {
+            lowPriority.offer(spanData);
+            return;
+        }
+        droppedLow.increment();
+    }
+
+    private boolean reserve(int limit) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void work() {
+        List<SpanData> batch = new ArrayList<>(maxBatchSize);
+        long nextExport = System.nanoTime() + scheduleDelayNanos;
+        while (!shutdown.get()) {
+            CompletableResultCode flush = flushRequest.getAndSet(null);
+            if (flush != null) {
+                flush(batch, flush);
+                nextExport = System.nanoTime() + scheduleDelayNanos;
+                continue;
+            }
+            drain(batch);
+            long now = System.nanoTime();
+            if (batch.size() >= maxBatchSize || now >= nextExport) {
+                export(batch);
+                nextExport = now + scheduleDelayNanos;
+            } else {
+                waitForSpans(nextExport - now);
+            }
+        }
+        // The spans left, and a flush requested during the shutdown
+        CompletableResultCode flush = flushRequest.getAndSet(null);
+        flush(batch, flush != null ? flush : new CompletableResultCode());
+    }
+
+    // Exports the batch in progress and the spans queued when the flush was
+    // requested, the spans that arrive meanwhile wait for the next batches
+    private void flush(List<SpanData> batch, CompletableResultCode flush) {
+        int remaining = size.get();
+        do {
+            remaining -= drain(batch);
+            export(batch);
+        } while (remaining > 0 && size.get() > 0);
+        CompletableResultCode exporterFlush = spanExporter.flush();
+        exporterFlush.whenComplete(() -> {
+            if (exporterFlush.isSuccess()) {
+                flush.succeed();
+            } else {
+                flush.fail();
+            }
+        });
+    }
+
+    private void waitForSpans(long nanos) {
+        synchronized (signal) {
+            if (size.get() >= maxBatchSize || shutdown.get() || flushRequest.get() != null) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(signal, Math.max(1, nanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // High priority spans are taken first, returns the number of spans taken
+    private int drain(List<SpanData> batch) {
+        int initialSize = batch.size();
+        SpanData spanData;
+        while (batch.size() < maxBatchSize && (spanData = highPriority.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(spanData);
+        }
+        while (batch.size() < maxBatchSize && (spanData = lowPriority.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(spanData);
+        }
+        return batch.size() - initialSize;
+    }
+
+    private void export(List<SpanData> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableResultCode result = spanExporter.export(new ArrayList<>(batch));
+            result.join(exportTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (result.isSuccess()) {
+                exported.add(batch.size());
+            } else {
+                exportFailed.add(batch.size());
+                log.debug("Export failed, destination: {}, spans: {}", name, batch.size());
+            }
+        } catch (RuntimeException e) {
+            exportFailed.add(batch.size());
+            log.debug("Export failed, destination: " + name, e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Requests the worker to export the spans queued, a flush already requested
+     * and not started yet is shared
+     */
+    @Override
+    public CompletableResultCode forceFlush() {
+        if (shutdown.get()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        CompletableResultCode flush = new CompletableResultCode();
+        while (!flushRequest.compareAndSet(null, flush)) {
+            CompletableResultCode pending = flushRequest.get();
+            if (pending != null) {
+                return pending;
+            }
+        }
+        synchronized (signal) {
+            signal.notify();
+        }
+        return flush;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        if (!signalShutdown()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        return awaitShutdown(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(exportTimeoutMillis));
+    }
+
+    /**
+     * Requests the worker to export the spans left and stop, without waiting
+     *
+     * @return false when the shutdown was already requested
+     */
+    boolean signalShutdown() {
+        if (!shutdown.compareAndSet(false, true)) {
+            return false;
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the worker until the deadline, then shuts down the exporter
+     *
+     * @param deadlineNanos
+     *            System.nanoTime() the wait ends at
+     */
+    CompletableResultCode awaitShutdown(long deadlineNanos) {
+        try {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Export queue {} shutdown, exported: {}, dropped high: {}, dropped low: {}, evicted low: {}", name,
+                exported.sum(), droppedHigh.sum(), droppedLow.sum(), evictedLow.sum());
+        return spanExporter.shutdown();
+    }
+
+    public long getDroppedHighPriority() {
+        return droppedHigh.sum();
+    }
+
+    public long getDroppedLowPriority() {
+        return droppedLow.sum() + evictedLow.sum();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+}
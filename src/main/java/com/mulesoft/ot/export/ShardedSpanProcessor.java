@@ -0,0 +1,130 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Export queue partitioned by trace id.
+ *
+ * <p>
+ * Every shard is a {@link PrioritySpanProcessor} with its own exporter and
+ * worker thread, so the export of the ended spans is spread over several
+ * threads and connections. All the spans of a trace go to the same shard, the
+ * spans of a trace stay together in the batches.
+ */
+public class ShardedSpanProcessor implements SpanProcessor, ExportQueue {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final PrioritySpanProcessor[] shards;
+
+    /**
+     * @param name
+     *            name of the destination, the shards are named name-0 to name-n
+     * @param spanExporters
+     *            creates the exporter of every shard
+     * @param shardCount
+     *            number of shards
+     * @param capacity
+     *            maximum number of spans in all the shards, split evenly
+     * @param reservedPercentage
+     *            percentage of the capacity reserved for high priority spans
+     * @param slowSpanMillis
+     *            SERVER spans with this latency or more are high priority
+     */
+    public ShardedSpanProcessor(String name, Supplier<SpanExporter> spanExporters, int shardCount, int capacity,
+            int reservedPercentage, long slowSpanMillis) {
+        int count = Math.max(1, shardCount);
+        shards = new PrioritySpanProcessor[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new PrioritySpanProcessor(name + "-" + i, spanExporters.get(), Math.max(1, capacity / count),
+                    reservedPercentage, slowSpanMillis);
+        }
+    }
+
+    @Override
+    public void register(Meter meter) {
+        for (PrioritySpanProcessor shard : shards) {
+            shard.register(meter);
+        }
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        shardOf(span.getSpanContext().getTraceId()).onEnd(span);
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    // The trace id is random, its hash spreads the traces evenly
+    private PrioritySpanProcessor shardOf(String traceId) {
+        return shards[(traceId.hashCode() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        List<CompletableResultCode> results = new ArrayList<>(shards.length);
+        for (PrioritySpanProcessor shard : shards) {
+            results.add(shard.forceFlush());
+        }
+        return CompletableResultCode.ofAll(results);
+    }
+
+    // Every shard is signalled before any is joined, they all drain in parallel
+    // within one timeout
+    @Override
+    public CompletableResultCode shutdown() {
+        List<PrioritySpanProcessor> signalled = new ArrayList<>(shards.length);
+        for (PrioritySpanProcessor shard : shards) {
+            if (shard.signalShutdown()) {
+                signalled.add(shard);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+        List<CompletableResultCode> results = new ArrayList<>(signalled.size());
+        for (PrioritySpanProcessor shard : signalled) {
+            results.add(shard.awaitShutdown(deadline));
+        }
+        return CompletableResultCode.ofAll(results);
+    }
+
+    @Override
+    public int getQueueSize() {
+        int size = 0;
+        for (PrioritySpanProcessor shard : shards) {
+            size += shard.getQueueSize();
+        }
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        int capacity = 0;
+        for (PrioritySpanProcessor shard : shards) {
+            capacity += shard.getCapacity();
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,309 @@
+package com.mulesoft.ot.export;
+
+import com.mulesoft.ot.jmx.JmxRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.RuntimeMBeanException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Export pipeline shared by the applications of a worker that export to the
+ * same OTLP/HTTP endpoint, with one thread and one connection.
+ *
+ * <p>
+ * The pipeline is registered in the platform MBean server by the first
+ * application, the next ones attach to it. Every application keeps its spans
+ * in its own bounded queue and encodes them with its own resource. The worker
+ * pulls one batch from every application in turn, so a noisy application
+ * fills only its own queue, and posts the batches together: concatenated
+ * protobuf requests are one request with all their resource spans.
+ *
+ * <p>
+ * The pipeline runs with the classes of the application that created it. When
+ * that application is removed the pipeline shuts down, and the remaining
+ * applications attach again to a new pipeline.
+ */
+public class SharedExportPipeline implements SharedExportPipelineMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedExportPipeline.class);
+    private static final String TYPE = "SharedExportPipeline";
+    private static final String[] ATTACH_SIGNATURE = {String.class.getName(), Supplier.class.getName(),
+            Runnable.class.getName()};
+    private static final String[] DETACH_SIGNATURE = {String.class.getName()};
+    private static final int ATTACH_ATTEMPTS = 3;
+    private static final int MAX_REQUEST_BYTES = 4 * 1024 * 1024;
+    private static final long IDLE_WAIT_MILLIS = 500;
+
+    private final ObjectName name;
+    private final String owner;
+    private final OtlpHttpClient client;
+    private final Map<String, Application> applications = new LinkedHashMap<>();
+    private final ByteArrayOutputStream request = new ByteArrayOutputStream(64 * 1024);
+    private final LongAdder exportedRequests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder exportedBytes = new LongAdder();
+    private volatile boolean shutdown;
+    private Thread worker;
+    private int nextApplication;
+
+    private SharedExportPipeline(ObjectName name, String owner, OtlpHttpClient client) {
+        this.name = name;
+        this.owner = owner;
+        this.client = client;
+    }
+
+    /**
+     * Attaches the application to the pipeline of the endpoint, created by this
+     * application when the worker has none
+     *
+     * @param headers
+     *            headers of the requests, applications with other headers get
+     *            their own pipeline
+     * @return name of the MBean of the pipeline
+     * @throws IllegalStateException
+     *             when the application could not be attached
+     */
+    public static ObjectName attach(String endpoint, Map<String, String> headers, Duration timeout,
+            String application, Supplier<byte[]> drain, Runnable reattach) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = JmxRegistry.objectName(TYPE,
+                    headers.isEmpty() ? endpoint : endpoint + "#" + Integer.toHexString(headers.hashCode()));
+            for (int attempt = 0; attempt < ATTACH_ATTEMPTS; attempt++) {
+                if (!server.isRegistered(name)) {
+                    try {
+                        server.registerMBean(
+                                new SharedExportPipeline(name, application,
+                                        new OtlpHttpClient(endpoint, headers, timeout)),
+                                name);
+                        log.debug("Shared export pipeline created: {}", name);
+                    } catch (InstanceAlreadyExistsException e) {
+                        // Created by another application meanwhile
+                    }
+                }
+                try {
+                    server.invoke(name, "attach", new Object[]{application, drain, reattach}, ATTACH_SIGNATURE);
+                    log.debug("Application {} attached to the shared export pipeline {}", application, name);
+                    return name;
+                } catch (InstanceNotFoundException | RuntimeMBeanException e) {
+                    // The pipeline shut down meanwhile
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Shared export pipeline of " + endpoint + " not available", e);
+        }
+        throw new IllegalStateException("Shared export pipeline of " + endpoint + " not available");
+    }
+
+    /**
+     * Detaches the application from the pipeline name, nothing when the pipeline
+     * is gone
+     */
+    public static void detach(ObjectName name, String application) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "detach", new Object[]{application},
+                    DETACH_SIGNATURE);
+        } catch (JMException | RuntimeException e) {
+            log.debug("Application {} not detached from the shared export pipeline {}: {}", application, name,
+                    e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void attach(String application, Supplier<byte[]> drain, Runnable reattach) {
+        if (shutdown) {
+            throw new IllegalStateException("Shared export pipeline shut down");
+        }
+        applications.put(application, new Application(drain, reattach));
+        if (worker == null) {
+            worker = new Thread(this::work, "otel-export-shared");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    @Override
+    public void detach(String application) {
+        Application removed;
+        boolean closing = false;
+        List<Application> remaining = new ArrayList<>();
+        synchronized (this) {
+            removed = applications.remove(application);
+            if (!shutdown && (applications.isEmpty() || owner.equals(application))) {
+                shutdown = true;
+                closing = true;
+                remaining.addAll(applications.values());
+                applications.clear();
+                JmxRegistry.unregister(name);
+            }
+        }
+        if (removed != null) {
+            synchronized (request) {
+                byte[] batch;
+                while ((batch = pull(removed)) != null) {
+                    append(batch);
+                }
+                send();
+            }
+        }
+        if (closing) {
+            stopWorker();
+            log.debug("Shared export pipeline {} shut down, exported requests: {}, failed: {}", name,
+                    exportedRequests.sum(), failedRequests.sum());
+            // The remaining applications move to a new pipeline, with their classes
+            remaining.forEach(Application::reattach);
+        }
+    }
+
+    private void stopWorker() {
+        Thread current;
+        synchronized (this) {
+            current = worker;
+        }
+        if (current == null || current == Thread.currentThread()) {
+            return;
+        }
+        current.interrupt();
+        try {
+            current.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        while (!shutdown) {
+            boolean exported;
+            synchronized (request) {
+                exported = exportRound();
+            }
+            if (!exported) {
+                try {
+                    Thread.sleep(IDLE_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // One batch of every application, starting with a different one every round
+    private boolean exportRound() {
+        List<Application> round;
+        synchronized (this) {
+            round = new ArrayList<>(applications.values());
+        }
+        if (round.isEmpty()) {
+            return false;
+        }
+        boolean exported = false;
+        int start = nextApplication++ % round.size();
+        for (int i = 0; i < round.size(); i++) {
+            byte[] batch = pull(round.get((start + i) % round.size()));
+            if (batch != null) {
+                append(batch);
+                exported = true;
+            }
+        }
+        send();
+        return exported;
+    }
+
+    private static byte[] pull(Application application) {
+        try {
+            return application.drain.get();
+        } catch (RuntimeException | LinkageError e) {
+            // An application undeployed without detaching has no classes anymore
+            log.debug("Spans of an application could not be pulled", e);
+            return null;
+        }
+    }
+
+    private void append(byte[] batch) {
+        if (request.size() > 0 && request.size() + batch.length > MAX_REQUEST_BYTES) {
+            send();
+        }
+        request.write(batch, 0, batch.length);
+    }
+
+    private void send() {
+        if (request.size() == 0) {
+            return;
+        }
+        int size = request.size();
+        try {
+            int status = client.post(size, request::writeTo);
+            if (status >= 200 && status < 300) {
+                exportedRequests.increment();
+                exportedBytes.add(size);
+            } else {
+                failedRequests.increment();
+                log.debug("Shared export failed, endpoint: {}, status: {}", client.getEndpoint(), status);
+            }
+        } catch (IOException | RuntimeException e) {
+            failedRequests.increment();
+            log.debug("Shared export failed, endpoint: " + client.getEndpoint(), e);
+        } finally {
+            request.reset();
+        }
+    }
+
+    @Override
+    public String getEndpoint() {
+        return client.getEndpoint().toString();
+    }
+
+    @Override
+    public synchronized int getApplicationCount() {
+        return applications.size();
+    }
+
+    @Override
+    public long getExportedRequests() {
+        return exportedRequests.sum();
+    }
+
+    @Override
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public long getExportedBytes() {
+        return exportedBytes.sum();
+    }
+
+    private static final class Application {
+        private final Supplier<byte[]> drain;
+        private final Runnable reattach;
+
+        private Application(Supplier<byte[]> drain, Runnable reattach) {
+            this.drain = drain;
+            this.reattach = reattach;
+        }
+
+        void reattach() {
+            try {
+                reattach.run();
+            } catch (RuntimeException e) {
+                log.warn("Application not attached to a new shared export pipeline: {}", e.getMessage());
+            }
+        }
+    }
+}
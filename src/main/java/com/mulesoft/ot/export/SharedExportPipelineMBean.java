@@ -0,0 +1,42 @@
+package com.mulesoft.ot.export;
+
+import java.util.function.Supplier;
+
+/**
+ * JMX interface of the {@link SharedExportPipeline}. The applications call it
+ * through the platform MBean server, only with JDK types, because every
+ * application loads the connector classes in its own class loader.
+ */
+public interface SharedExportPipelineMBean {
+
+    /**
+     * Adds an application to the pipeline
+     *
+     * @param application
+     *            unique id of the application
+     * @param drain
+     *            returns the next OTLP ExportTraceServiceRequest of the
+     *            application in protobuf format, null when it has no spans
+     * @param reattach
+     *            attaches the application again, called when the pipeline
+     *            shuts down while the application is attached
+     */
+    void attach(String application, Supplier<byte[]> drain, Runnable reattach);
+
+    /**
+     * Exports the spans left by the application and removes it. The pipeline
+     * shuts down when the last application, or the one that created it, is
+     * removed
+     */
+    void detach(String application);
+
+    String getEndpoint();
+
+    int getApplicationCount();
+
+    long getExportedRequests();
+
+    long getFailedRequests();
+
+    long getExportedBytes();
+}
@@ -0,0 +1,182 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Span processor of an application that exports through the
+ * {@link SharedExportPipeline} of the worker.
+ *
+ * <p>
+ * The ended spans wait in a bounded queue of the application, the spans that
+ * do not fit are dropped. The application has no export thread: the worker of
+ * the pipeline pulls the spans in batches, encoded with the resource of the
+ * application.
+ */
+public class SharedPipelineSpanProcessor implements SpanProcessor, ExportQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedPipelineSpanProcessor.class);
+    private static final AttributeKey<String> DESTINATION = AttributeKey.stringKey("destination");
+    private static final String SHARED = "shared";
+
+    private final String application;
+    private final String endpoint;
+    private final Map<String, String> headers;
+    private final Duration timeout;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final Queue<SpanData> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+    private final OtlpProtoEncoder encoder = new OtlpProtoEncoder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile ObjectName pipeline;
+
+    /**
+     * @param application
+     *            name of the application, for the logs of the pipeline
+     * @param endpoint
+     *            URL of the traces of the OTLP/HTTP endpoint
+     * @param capacity
+     *            maximum number of spans waiting for the pipeline
+     */
+    public SharedPipelineSpanProcessor(String application, String endpoint, Map<String, String> headers,
+            Duration timeout, int capacity) {
+        this.application = application + "#" + Integer.toHexString(System.identityHashCode(this));
+        this.endpoint = endpoint;
+        this.headers = headers;
+        this.timeout = timeout;
+        this.capacity = Math.max(1, capacity);
+        this.maxBatchSize = Math.min(512, this.capacity);
+        attach();
+    }
+
+    // Also called by the pipeline when it shuts down while this application is
+    // attached
+    private void attach() {
+        if (shutdown.get()) {
+            return;
+        }
+        try {
+            pipeline = SharedExportPipeline.attach(endpoint, headers, timeout, application, this::drain,
+                    this::attach);
+        } catch (IllegalStateException e) {
+            log.warn("{}, the spans are dropped", e.getMessage());
+        }
+    }
+
+    /**
+     * Next batch of spans in protobuf format, null when the queue is empty
+     */
+    private synchronized byte[] drain() {
+        List<SpanData> batch = new ArrayList<>(Math.min(maxBatchSize, size.get()));
+        SpanData spanData;
+        while (batch.size() < maxBatchSize && (spanData = queue.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(spanData);
+        }
+        if (batch.isEmpty()) {
+            return null;
+        }
+        try {
+            encoder.encode(batch);
+            published.add(batch.size());
+            return encoder.toByteArray();
+        } finally {
+            encoder.reset();
+        }
+    }
+
+    @Override
+    public void register(Meter meter) {
+        Attributes destination = Attributes.of(DESTINATION, SHARED);
+        meter.counterBuilder("mule.otel.export.dropped").setDescription("Spans dropped by the export queue")
+                .setUnit("1").buildWithCallback(measurement -> measurement.record(dropped.sum(), destination));
+        meter.counterBuilder("mule.otel.export.exported").setDescription("Spans exported").setUnit("1")
+                .buildWithCallback(measurement -> measurement.record(published.sum(), destination));
+        meter.gaugeBuilder("mule.otel.export.queue.size").ofLongs().setDescription("Spans waiting in the queue")
+                .setUnit("1").buildWithCallback(measurement -> measurement.record(size.get(), destination));
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (!span.getSpanContext().isSampled() || shutdown.get()) {
+            return;
+        }
+        if (pipeline != null && reserve()) {
+            queue.offer(span.toSpanData());
+        } else {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        if (!shutdown.compareAndSet(false, true)) {
+            return CompletableResultCode.ofSuccess();
+        }
+        // The pipeline exports the spans left before it removes the application
+        if (pipeline != null) {
+            SharedExportPipeline.detach(pipeline, application);
+        }
+        log.debug("Shared export of {} shutdown, published: {}, dropped: {}", application, published.sum(),
+                dropped.sum());
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+}
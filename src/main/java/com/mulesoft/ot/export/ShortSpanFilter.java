@@ -0,0 +1,237 @@
+package com.mulesoft.ot.export;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops the INTERNAL processor spans shorter than a threshold, per processor
+ * namespace.
+ *
+ * <p>
+ * The thresholds are written as milliseconds, a bare value for all the
+ * namespaces and namespace=value for one of them: "1, ee=5, db=0". Only the
+ * spans with a processor namespace are candidates, the spans of the
+ * open-telemetry:span scopes and the wait spans are always kept, as are the
+ * spans with status ERROR, root spans, spans of other kinds and spans with a
+ * child kept, so no exported span loses its parent.
+ *
+ * <p>
+ * The filter sits in front of the export processors added with
+ * {@link #forwardTo}: the decision is taken once when the span ends, and only
+ * the spans kept reach the export queues. The parent span gets, while it is
+ * open, the number and the total duration of its children dropped.
+ */
+public class ShortSpanFilter implements SpanProcessor {
+
+    private static final AttributeKey<String> NAMESPACE = AttributeKey
+            .stringKey(Constants.SERVICE_PROCESSOR_NAMESPACE);
+    private static final AttributeKey<Long> DROPPED_COUNT = AttributeKey.longKey(Constants.SPAN_DROPPED_CHILDREN);
+    private static final AttributeKey<Long> DROPPED_DURATION = AttributeKey
+            .longKey(Constants.SPAN_DROPPED_CHILDREN_DURATION);
+    private static final String DEFAULT = "";
+
+    private final Map<String, Long> thresholds;
+    private final long defaultThresholdNanos;
+    // Open spans with a child that can be dropped, or that can be dropped and
+    // have children
+    private final ConcurrentHashMap<String, Parent> parents = new ConcurrentHashMap<>();
+    private final List<SpanProcessor> spanProcessors = new CopyOnWriteArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException
+     *             when a threshold is not a number
+     */
+    public ShortSpanFilter(String thresholds) {
+        this.thresholds = parse(thresholds);
+        this.defaultThresholdNanos = this.thresholds.getOrDefault(DEFAULT, 0L);
+    }
+
+    private static Map<String, Long> parse(String thresholds) {
+        Map<String, Long> parsed = new HashMap<>();
+        if (thresholds == null) {
+            return parsed;
+        }
+        for (String threshold : thresholds.split(",")) {
+            if (threshold.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = threshold.split("=", 2);
+            String namespace = parts.length == 2 ? parts[0].trim().toLowerCase(Locale.ROOT) : DEFAULT;
+            double millis = Double.parseDouble(parts[parts.length - 1].trim());
+            parsed.put(namespace, (long) (millis * TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        return parsed;
+    }
+
+    /**
+     * The filter drops no span
+     */
+    public boolean isEmpty() {
+        return thresholds.values().stream().allMatch(threshold -> threshold <= 0);
+    }
+
+    /**
+     * Adds a processor that receives only the spans kept, it is flushed and shut
+     * down with the filter
+     */
+    public void forwardTo(SpanProcessor spanProcessor) {
+        spanProcessors.add(spanProcessor);
+    }
+
+    // The parents are local spans still open, the processors that contain other
+    // processors are opened before their children
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        Span parentSpan = Span.fromContext(parentContext);
+        if (parentSpan instanceof ReadWriteSpan && !((ReadWriteSpan) parentSpan).hasEnded()) {
+            ReadWriteSpan parent = (ReadWriteSpan) parentSpan;
+            boolean parentCandidate = threshold(parent) > 0;
+            if (parentCandidate || threshold(span) > 0) {
+                parentOf(parent, parentCandidate).started();
+            }
+        }
+        for (SpanProcessor spanProcessor : spanProcessors) {
+            if (spanProcessor.isStartRequired()) {
+                spanProcessor.onStart(parentContext, span);
+            }
+        }
+    }
+
+    private Parent parentOf(ReadWriteSpan span, boolean candidate) {
+        String spanId = span.getSpanContext().getSpanId();
+        Parent parent = parents.get(spanId);
+        if (parent == null) {
+            Parent created = new Parent(span, candidate);
+            parent = parents.putIfAbsent(spanId, created);
+            return parent != null ? parent : created;
+        }
+        return parent;
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        Parent self = parents.remove(span.getSpanContext().getSpanId());
+        long threshold = threshold(span);
+        boolean dropped = drops(span, threshold, self);
+        SpanContext parentContext = span.getParentSpanContext();
+        if (parentContext.isValid() && !parentContext.isRemote()) {
+            Parent parent = parents.get(parentContext.getSpanId());
+            if (parent != null && (parent.candidate || threshold > 0)) {
+                parent.ended(dropped, span.getLatencyNanos());
+            }
+        }
+        if (dropped) {
+            return;
+        }
+        for (SpanProcessor spanProcessor : spanProcessors) {
+            if (spanProcessor.isEndRequired()) {
+                spanProcessor.onEnd(span);
+            }
+        }
+    }
+
+    // The status is read last, only for the spans about to be dropped
+    private static boolean drops(ReadableSpan span, long threshold, Parent self) {
+        SpanContext parent = span.getParentSpanContext();
+        if (threshold <= 0 || span.getLatencyNanos() >= threshold || !parent.isValid() || parent.isRemote()) {
+            return false;
+        }
+        if (self != null && self.hasChildrenKept()) {
+            return false;
+        }
+        return !StatusCode.ERROR.equals(span.toSpanData().getStatus().getStatusCode());
+    }
+
+    // Threshold of an INTERNAL processor span, 0 for the spans never dropped
+    private long threshold(ReadableSpan span) {
+        if (span.getKind() != SpanKind.INTERNAL) {
+            return 0;
+        }
+        // The spans without processor namespace are not processor spans
+        String namespace = span.getAttribute(NAMESPACE);
+        if (namespace == null) {
+            return 0;
+        }
+        Long threshold = thresholds.get(namespace.toLowerCase(Locale.ROOT));
+        return threshold != null ? threshold : defaultThresholdNanos;
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        List<CompletableResultCode> results = new ArrayList<>(spanProcessors.size());
+        spanProcessors.forEach(spanProcessor -> results.add(spanProcessor.forceFlush()));
+        return CompletableResultCode.ofAll(results);
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        parents.clear();
+        List<CompletableResultCode> results = new ArrayList<>(spanProcessors.size());
+        spanProcessors.forEach(spanProcessor -> results.add(spanProcessor.shutdown()));
+        return CompletableResultCode.ofAll(results);
+    }
+
+    private static final class Parent {
+        private final ReadWriteSpan span;
+        // The parent can be dropped itself
+        private final boolean candidate;
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private volatile boolean childKept;
+
+        private Parent(ReadWriteSpan span, boolean candidate) {
+            this.span = span;
+            this.candidate = candidate;
+        }
+
+        void started() {
+            open.incrementAndGet();
+        }
+
+        void ended(boolean dropped, long latencyNanos) {
+            if (dropped) {
+                span.setAttribute(DROPPED_COUNT, count.incrementAndGet());
+                span.setAttribute(DROPPED_DURATION, nanos.addAndGet(latencyNanos));
+            } else {
+                childKept = true;
+            }
+            open.decrementAndGet();
+        }
+
+        // A child still open is kept when it ends after its parent
+        boolean hasChildrenKept() {
+            return childKept || open.get() > 0;
+        }
+    }
+}
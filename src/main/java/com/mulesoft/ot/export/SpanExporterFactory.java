@@ -0,0 +1,170 @@
+package com.mulesoft.ot.export;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporterBuilder;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporterBuilder;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessorBuilder;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Creates the span exporters used by the export pipelines of the connector.
+ * The OTLP exporter follows the same properties as the SDK autoconfiguration:
+ * otel.exporter.otlp[.traces].endpoint, protocol, headers and timeout.
+ */
+public final class SpanExporterFactory {
+
+    private static final String GRPC = "grpc";
+    private static final String DEFAULT_GRPC_ENDPOINT = "http://localhost:4317";
+    private static final String DEFAULT_HTTP_ENDPOINT = "http://localhost:4318";
+    private static final String HTTP_TRACES_PATH = "/v1/traces";
+
+    private SpanExporterFactory() {
+    }
+
+    /**
+     * Exporter of an additional destination, the OTLP exporters take the headers
+     * and timeout of the OTLP configuration
+     */
+    public static SpanExporter create(ExportDestination destination, ConfigProperties config) {
+        Map<String, String> headers = config.getMap(Constants.OTEL_EXPORTER_OTLP_HEADERS);
+        Duration timeout = config.getDuration(Constants.OTEL_EXPORTER_OTLP_TIMEOUT);
+        String endpoint = destination.getEndpoint();
+        switch (destination.getExporter()) {
+            case ExportDestination.LOGGING :
+                return LoggingSpanExporter.create();
+            case ExportDestination.OTLP_GRPC :
+                return otlpGrpc(endpoint != null ? endpoint : grpcTracesEndpoint(config), headers, timeout);
+            case ExportDestination.OTLP_DIRECT :
+                return otlpDirect(config, endpoint);
+            case ExportDestination.OTLP_HTTP :
+                return otlpHttp(endpoint != null ? endpoint : httpTracesEndpoint(config), headers, timeout);
+            default :
+                if (endpoint == null) {
+                    return otlp(config);
+                }
+                String protocol = firstNonNull(config.getString(Constants.OTEL_EXPORTER_OTLP_TRACES_PROTOCOL),
+                        config.getString(Constants.OTEL_EXPORTER_OTLP_PROTOCOL), GRPC);
+                return GRPC.equalsIgnoreCase(protocol)
+                        ? otlpGrpc(endpoint, headers, timeout)
+                        : otlpHttp(endpoint, headers, timeout);
+        }
+    }
+
+    public static SpanExporter otlp(ConfigProperties config) {
+        String protocol = firstNonNull(config.getString(Constants.OTEL_EXPORTER_OTLP_TRACES_PROTOCOL),
+                config.getString(Constants.OTEL_EXPORTER_OTLP_PROTOCOL), GRPC);
+        Map<String, String> headers = config.getMap(Constants.OTEL_EXPORTER_OTLP_HEADERS);
+        Duration timeout = config.getDuration(Constants.OTEL_EXPORTER_OTLP_TIMEOUT);
+
+        if (GRPC.equalsIgnoreCase(protocol)) {
+            return otlpGrpc(grpcTracesEndpoint(config), headers, timeout);
+        }
+        return otlpHttp(httpTracesEndpoint(config), headers, timeout);
+    }
+
+    /**
+     * Low allocation OTLP/HTTP exporter, always protobuf over HTTP whatever the
+     * protocol configured
+     *
+     * @param endpoint
+     *            URL of the traces, null for the one of the OTLP configuration
+     */
+    public static SpanExporter otlpDirect(ConfigProperties config, String endpoint) {
+        return new OtlpHttpDirectSpanExporter(endpoint != null ? endpoint : httpTracesEndpoint(config),
+                config.getMap(Constants.OTEL_EXPORTER_OTLP_HEADERS),
+                config.getDuration(Constants.OTEL_EXPORTER_OTLP_TIMEOUT));
+    }
+
+    /**
+     * Batch span processor configured with the otel.bsp properties, like the
+     * one the SDK autoconfiguration creates for the traces exporter
+     */
+    public static BatchSpanProcessor batch(SpanExporter spanExporter, ConfigProperties config) {
+        BatchSpanProcessorBuilder builder = BatchSpanProcessor.builder(spanExporter);
+        Duration scheduleDelay = config.getDuration(Constants.OTEL_BSP_SCHEDULE_DELAY);
+        if (scheduleDelay != null) {
+            builder.setScheduleDelay(scheduleDelay);
+        }
+        Integer maxQueueSize = config.getInt(Constants.OTEL_BSP_MAX_QUEUE_SIZE);
+        if (maxQueueSize != null) {
+            builder.setMaxQueueSize(maxQueueSize);
+        }
+        Integer maxExportBatchSize = config.getInt(Constants.OTEL_BSP_MAX_EXPORT_BATCH_SIZE);
+        if (maxExportBatchSize != null) {
+            builder.setMaxExportBatchSize(maxExportBatchSize);
+        }
+        Duration timeout = config.getDuration(Constants.OTEL_BSP_EXPORT_TIMEOUT);
+        if (timeout != null) {
+            builder.setExporterTimeout(timeout);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Processor of the spans exported through the pipeline shared by the
+     * applications of the worker, always protobuf over HTTP
+     */
+    public static SharedPipelineSpanProcessor sharedPipeline(ConfigProperties config, String application,
+            int capacity) {
+        return new SharedPipelineSpanProcessor(application, httpTracesEndpoint(config),
+                config.getMap(Constants.OTEL_EXPORTER_OTLP_HEADERS),
+                config.getDuration(Constants.OTEL_EXPORTER_OTLP_TIMEOUT), capacity);
+    }
+
+    // Endpoint of the OTLP/gRPC configuration
+    private static String grpcTracesEndpoint(ConfigProperties config) {
+        return firstNonNull(config.getString(Constants.OTEL_EXPORTER_OTLP_TRACES_ENDPOINT),
+                config.getString(Constants.OTEL_EXPORTER_OTLP_ENDPOINT), DEFAULT_GRPC_ENDPOINT);
+    }
+
+    // URL of the traces of the OTLP/HTTP endpoint configured
+    private static String httpTracesEndpoint(ConfigProperties config) {
+        return httpTracesEndpoint(config.getString(Constants.OTEL_EXPORTER_OTLP_TRACES_ENDPOINT),
+                config.getString(Constants.OTEL_EXPORTER_OTLP_ENDPOINT));
+    }
+
+    private static String httpTracesEndpoint(String tracesEndpoint, String endpoint) {
+        if (tracesEndpoint != null && !tracesEndpoint.trim().isEmpty()) {
+            return tracesEndpoint;
+        }
+        String base = firstNonNull(endpoint, DEFAULT_HTTP_ENDPOINT, null);
+        base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        return base.concat(HTTP_TRACES_PATH);
+    }
+
+    public static SpanExporter otlpGrpc(String endpoint, Map<String, String> headers, Duration timeout) {
+        OtlpGrpcSpanExporterBuilder builder = OtlpGrpcSpanExporter.builder().setEndpoint(endpoint);
+        headers.forEach(builder::addHeader);
+        if (timeout != null) {
+            builder.setTimeout(timeout);
+        }
+        return builder.build();
+    }
+
+    public static SpanExporter otlpHttp(String endpoint, Map<String, String> headers, Duration timeout) {
+        OtlpHttpSpanExporterBuilder builder = OtlpHttpSpanExporter.builder().setEndpoint(endpoint);
+        headers.forEach(builder::addHeader);
+        if (timeout != null) {
+            builder.setTimeout(timeout);
+        }
+        return builder.build();
+    }
+
+    private static String firstNonNull(String first, String second, String third) {
+        if (first != null && !first.trim().isEmpty()) {
+            return first;
+        }
+        if (second != null && !second.trim().isEmpty()) {
+            return second;
+        }
+        return third;
+    }
+}
@@ -0,0 +1,272 @@
+package com.mulesoft.ot.flightrecorder;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory record of the last traces built by the connector, independent of
+ * the exporters.
+ *
+ * <p>
+ * The ended sampled spans are kept per trace until the root span of the node
+ * ends. The completed traces go to a ring buffer of the last N traces, the ones
+ * with an ERROR span are also kept for the last M minutes. The traces are
+ * dumped on demand as OTLP JSON, through an operation or JMX.
+ *
+ * <p>
+ * The pending traces are split in stripes by trace id, each with its own lock,
+ * the lock of the completed traces is taken once per trace. All the traces
+ * together hold at most {@link #MAX_SPANS} spans: above it the oldest completed
+ * traces are discarded first, and the new spans are not recorded while only
+ * pending traces are left.
+ */
+public class FlightRecorder implements SpanProcessor, FlightRecorderMBean {
+
+    static final int MAX_SPANS = 20_000;
+    private static final int MAX_SPANS_PER_TRACE = 1000;
+    private static final int MAX_ERROR_TRACES = 1000;
+    private static final int STRIPES = 16;
+    // Traces whose root span did not end yet, the oldest ones are discarded
+    private static final int MAX_PENDING_TRACES_PER_STRIPE = 10_000 / STRIPES;
+    // Completed traces discarded at most per recorded span above the limit
+    private static final int MAX_EVICTIONS = 8;
+
+    private final int maxTraces;
+    private final long errorRetentionMillis;
+    private final Deque<RecordedTrace> lastTraces = new ArrayDeque<>();
+    private final Deque<RecordedTrace> errorTraces = new ArrayDeque<>();
+    private final Map<String, RecordedTrace>[] pending;
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private volatile Resource resource;
+
+    /**
+     * @param maxTraces
+     *            last completed traces kept
+     * @param errorRetentionMinutes
+     *            minutes the error traces are kept, even after they leave the
+     *            last traces
+     */
+    @SuppressWarnings("unchecked")
+    public FlightRecorder(int maxTraces, int errorRetentionMinutes) {
+        this.maxTraces = Math.max(1, maxTraces);
+        this.errorRetentionMillis = TimeUnit.MINUTES.toMillis(Math.max(0, errorRetentionMinutes));
+        this.pending = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            pending[i] = new LinkedHashMap<String, RecordedTrace>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RecordedTrace> eldest) {
+                    if (size() <= MAX_PENDING_TRACES_PER_STRIPE) {
+                        return false;
+                    }
+                    spanCount.addAndGet(-eldest.getValue().size());
+                    return true;
+                }
+            };
+        }
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (!span.getSpanContext().isSampled() || !reserve()) {
+            return;
+        }
+        SpanData spanData = span.toSpanData();
+        if (resource == null) {
+            resource = spanData.getResource();
+        }
+        RecordedSpan recorded = new RecordedSpan(spanData);
+        SpanContext parent = spanData.getParentSpanContext();
+        boolean root = !parent.isValid() || parent.isRemote();
+        Map<String, RecordedTrace> stripe = pending[(recorded.getTraceId().hashCode() & Integer.MAX_VALUE) % STRIPES];
+        RecordedTrace trace;
+        synchronized (stripe) {
+            trace = root
+                    ? stripe.remove(recorded.getTraceId())
+                    : stripe.computeIfAbsent(recorded.getTraceId(), key -> new RecordedTrace(MAX_SPANS_PER_TRACE));
+            if (trace == null) {
+                trace = new RecordedTrace(MAX_SPANS_PER_TRACE);
+            }
+            if (!trace.add(recorded)) {
+                spanCount.decrementAndGet();
+            }
+        }
+        if (root) {
+            complete(trace, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    // Takes the place of one span, discarding the oldest completed traces above
+    // the limit
+    private boolean reserve() {
+        if (spanCount.incrementAndGet() <= MAX_SPANS) {
+            return true;
+        }
+        synchronized (lastTraces) {
+            for (int i = 0; i < MAX_EVICTIONS && spanCount.get() > MAX_SPANS; i++) {
+                if (!lastTraces.isEmpty()) {
+                    release(lastTraces.removeFirst());
+                } else if (!errorTraces.isEmpty()) {
+                    release(errorTraces.removeFirst());
+                } else {
+                    break;
+                }
+            }
+        }
+        if (spanCount.get() <= MAX_SPANS) {
+            return true;
+        }
+        spanCount.decrementAndGet();
+        return false;
+    }
+
+    // A trace can be in the last traces and in the error traces, its spans are
+    // released when it leaves both
+    private void release(RecordedTrace trace) {
+        if (trace.release() == 0) {
+            spanCount.addAndGet(-trace.size());
+        }
+    }
+
+    private void complete(RecordedTrace trace, long now) {
+        synchronized (lastTraces) {
+            trace.complete(now);
+            trace.hold();
+            lastTraces.addLast(trace);
+            if (lastTraces.size() > maxTraces) {
+                release(lastTraces.removeFirst());
+            }
+            if (trace.isError() && errorRetentionMillis > 0) {
+                trace.hold();
+                errorTraces.addLast(trace);
+                if (errorTraces.size() > MAX_ERROR_TRACES) {
+                    release(errorTraces.removeFirst());
+                }
+            }
+            expireErrorTraces(now);
+        }
+    }
+
+    private void expireErrorTraces(long now) {
+        while (!errorTraces.isEmpty() && now - errorTraces.peekFirst().getCompletedMillis() > errorRetentionMillis) {
+            release(errorTraces.removeFirst());
+        }
+    }
+
+    /**
+     * @param errorsOnly
+     *            only the error traces of the last minutes
+     * @return the traces, oldest first, in OTLP JSON, at most {@link #MAX_SPANS}
+     *         spans
+     */
+    public String dump(boolean errorsOnly) {
+        return OtlpJsonWriter.write(resource, snapshot(errorsOnly));
+    }
+
+    // The completed traces do not change, only the references are copied under
+    // the lock
+    private List<RecordedTrace> snapshot(boolean errorsOnly) {
+        List<RecordedTrace> snapshot;
+        List<RecordedTrace> last;
+        synchronized (lastTraces) {
+            expireErrorTraces(System.currentTimeMillis());
+            snapshot = new ArrayList<>(errorTraces);
+            if (errorsOnly) {
+                return snapshot;
+            }
+            last = new ArrayList<>(lastTraces);
+        }
+        // The error traces still in the last traces are not repeated
+        Set<RecordedTrace> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        added.addAll(snapshot);
+        for (RecordedTrace trace : last) {
+            if (!added.contains(trace)) {
+                snapshot.add(trace);
+            }
+        }
+        snapshot.sort((a, b) -> Long.compare(a.getCompletedMillis(), b.getCompletedMillis()));
+        return snapshot;
+    }
+
+    @Override
+    public String dumpTraces() {
+        return dump(false);
+    }
+
+    @Override
+    public String dumpErrorTraces() {
+        return dump(true);
+    }
+
+    @Override
+    public int getTraceCount() {
+        synchronized (lastTraces) {
+            return lastTraces.size();
+        }
+    }
+
+    @Override
+    public int getErrorTraceCount() {
+        synchronized (lastTraces) {
+            return errorTraces.size();
+        }
+    }
+
+    @Override
+    public int getPendingTraceCount() {
+        int count = 0;
+        for (Map<String, RecordedTrace> stripe : pending) {
+            synchronized (stripe) {
+                count += stripe.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getSpanCount() {
+        return spanCount.get();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        for (Map<String, RecordedTrace> stripe : pending) {
+            synchronized (stripe) {
+                stripe.values().forEach(trace -> spanCount.addAndGet(-trace.size()));
+                stripe.clear();
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,28 @@
+package com.mulesoft.ot.flightrecorder;
+
+/**
+ * JMX interface of the {@link FlightRecorder}
+ */
+public interface FlightRecorderMBean {
+
+    /**
+     * Last completed traces and recent error traces in OTLP JSON
+     */
+    String dumpTraces();
+
+    /**
+     * Error traces of the last minutes in OTLP JSON
+     */
+    String dumpErrorTraces();
+
+    int getTraceCount();
+
+    int getErrorTraceCount();
+
+    int getPendingTraceCount();
+
+    /**
+     * Spans held by the pending and completed traces
+     */
+    int getSpanCount();
+}
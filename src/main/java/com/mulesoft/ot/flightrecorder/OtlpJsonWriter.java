@@ -0,0 +1,172 @@
+package com.mulesoft.ot.flightrecorder;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the recorded traces as an OTLP JSON ExportTraceServiceRequest, the
+ * format accepted by the OTLP/HTTP endpoints of the collectors
+ */
+final class OtlpJsonWriter {
+
+    private OtlpJsonWriter() {
+    }
+
+    static String write(Resource resource, Collection<RecordedTrace> traces) {
+        Map<InstrumentationScopeInfo, List<RecordedSpan>> scopes = new LinkedHashMap<>();
+        traces.forEach(trace -> trace.getSpans()
+                .forEach(span -> scopes.computeIfAbsent(span.getScope(), key -> new ArrayList<>()).add(span)));
+
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"resourceSpans\":[");
+        if (!scopes.isEmpty()) {
+            json.append("{\"resource\":{\"attributes\":");
+            attributes(json, resource != null ? resource.getAttributes() : Attributes.empty());
+            json.append("},\"scopeSpans\":[");
+            boolean first = true;
+            for (Map.Entry<InstrumentationScopeInfo, List<RecordedSpan>> scope : scopes.entrySet()) {
+                json.append(first ? "" : ",").append("{\"scope\":{\"name\":");
+                string(json, scope.getKey().getName());
+                if (scope.getKey().getVersion() != null) {
+                    json.append(",\"version\":");
+                    string(json, scope.getKey().getVersion());
+                }
+                json.append("},\"spans\":[");
+                for (int i = 0; i < scope.getValue().size(); i++) {
+                    span(json.append(i > 0 ? "," : ""), scope.getValue().get(i));
+                }
+                json.append("]}");
+                first = false;
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void span(StringBuilder json, RecordedSpan span) {
+        json.append("{\"traceId\":\"").append(span.getTraceId()).append("\",\"spanId\":\"").append(span.getSpanId())
+                .append('"');
+        if (span.getParentSpanId() != null) {
+            json.append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"');
+        }
+        json.append(",\"name\":");
+        string(json, span.getName());
+        // The OTLP enums start with UNSPECIFIED, the SpanKind constants follow their
+        // order from INTERNAL
+        json.append(",\"kind\":").append(span.getKind().ordinal() + 1);
+        json.append(",\"startTimeUnixNano\":\"").append(span.getStartEpochNanos())
+                .append("\",\"endTimeUnixNano\":\"").append(span.getEndEpochNanos()).append("\",\"attributes\":");
+        attributes(json, span.getAttributes());
+        if (!span.getEvents().isEmpty()) {
+            json.append(",\"events\":[");
+            for (int i = 0; i < span.getEvents().size(); i++) {
+                EventData event = span.getEvents().get(i);
+                json.append(i > 0 ? "," : "").append("{\"timeUnixNano\":\"").append(event.getEpochNanos())
+                        .append("\",\"name\":");
+                string(json, event.getName());
+                json.append(",\"attributes\":");
+                attributes(json, event.getAttributes());
+                json.append('}');
+            }
+            json.append(']');
+        }
+        // UNSET, OK and ERROR have the same order in OTLP
+        json.append(",\"status\":{\"code\":").append(span.getStatusCode().ordinal());
+        if (span.getStatusDescription() != null && !span.getStatusDescription().isEmpty()) {
+            json.append(",\"message\":");
+            string(json, span.getStatusDescription());
+        }
+        json.append("}}");
+    }
+
+    private static void attributes(StringBuilder json, Attributes attributes) {
+        json.append('[');
+        boolean[] first = {true};
+        attributes.forEach((key, value) -> {
+            json.append(first[0] ? "" : ",").append("{\"key\":");
+            string(json, key.getKey());
+            json.append(",\"value\":");
+            value(json, key, value);
+            json.append('}');
+            first[0] = false;
+        });
+        json.append(']');
+    }
+
+    private static void value(StringBuilder json, AttributeKey<?> key, Object value) {
+        switch (key.getType()) {
+            case STRING_ARRAY :
+            case BOOLEAN_ARRAY :
+            case LONG_ARRAY :
+            case DOUBLE_ARRAY :
+                json.append("{\"arrayValue\":{\"values\":[");
+                List<?> values = (List<?>) value;
+                for (int i = 0; i < values.size(); i++) {
+                    scalar(json.append(i > 0 ? "," : ""), values.get(i));
+                }
+                json.append("]}}");
+                break;
+            default :
+                scalar(json, value);
+        }
+    }
+
+    private static void scalar(StringBuilder json, Object value) {
+        if (value instanceof Boolean) {
+            json.append("{\"boolValue\":").append(value).append('}');
+        } else if (value instanceof Long) {
+            json.append("{\"intValue\":\"").append(value).append("\"}");
+        } else if (value instanceof Double) {
+            double number = (Double) value;
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                json.append("{\"doubleValue\":\"").append(value).append("\"}");
+            } else {
+                json.append("{\"doubleValue\":").append(value).append('}');
+            }
+        } else {
+            json.append("{\"stringValue\":");
+            string(json, String.valueOf(value));
+            json.append('}');
+        }
+    }
+
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' :
+                    json.append("\\\"");
+                    break;
+                case '\\' :
+                    json.append("\\\\");
+                    break;
+                case '\n' :
+                    json.append("\\n");
+                    break;
+                case '\r' :
+                    json.append("\\r");
+                    break;
+                case '\t' :
+                    json.append("\\t");
+                    break;
+                default :
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,94 @@
+package com.mulesoft.ot.flightrecorder;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ended span kept by the {@link FlightRecorder}, only the fields written in the
+ * dump. The attributes, events and scope are shared with the span data.
+ */
+final class RecordedSpan {
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final SpanKind kind;
+    private final long startEpochNanos;
+    private final long endEpochNanos;
+    private final StatusCode statusCode;
+    private final String statusDescription;
+    private final Attributes attributes;
+    private final List<EventData> events;
+    private final InstrumentationScopeInfo scope;
+
+    RecordedSpan(SpanData spanData) {
+        this.traceId = spanData.getTraceId();
+        this.spanId = spanData.getSpanId();
+        this.parentSpanId = spanData.getParentSpanContext().isValid() ? spanData.getParentSpanId() : null;
+        this.name = spanData.getName();
+        this.kind = spanData.getKind();
+        this.startEpochNanos = spanData.getStartEpochNanos();
+        this.endEpochNanos = spanData.getEndEpochNanos();
+        this.statusCode = spanData.getStatus().getStatusCode();
+        this.statusDescription = spanData.getStatus().getDescription();
+        this.attributes = spanData.getAttributes();
+        this.events = spanData.getEvents().isEmpty() ? Collections.emptyList() : spanData.getEvents();
+        this.scope = spanData.getInstrumentationScopeInfo();
+    }
+
+    String getTraceId() {
+        return traceId;
+    }
+
+    String getSpanId() {
+        return spanId;
+    }
+
+    String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    SpanKind getKind() {
+        return kind;
+    }
+
+    long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+
+    long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+
+    StatusCode getStatusCode() {
+        return statusCode;
+    }
+
+    String getStatusDescription() {
+        return statusDescription;
+    }
+
+    Attributes getAttributes() {
+        return attributes;
+    }
+
+    List<EventData> getEvents() {
+        return events;
+    }
+
+    InstrumentationScopeInfo getScope() {
+        return scope;
+    }
+}
@@ -0,0 +1,68 @@
+package com.mulesoft.ot.flightrecorder;
+
+import io.opentelemetry.api.trace.StatusCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spans of a trace kept by the {@link FlightRecorder}, in the order they ended.
+ * Pending, it is changed under the lock of its stripe, completed, under the
+ * lock of the completed traces.
+ */
+final class RecordedTrace {
+
+    private final List<RecordedSpan> spans = new ArrayList<>();
+    private final int maxSpans;
+    private boolean error;
+    private long completedMillis;
+    private int holders;
+
+    RecordedTrace(int maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    /**
+     * @return the span is kept, the spans over the limit only mark the trace as
+     *         error
+     */
+    boolean add(RecordedSpan span) {
+        if (StatusCode.ERROR.equals(span.getStatusCode())) {
+            error = true;
+        }
+        if (spans.size() < maxSpans) {
+            spans.add(span);
+            return true;
+        }
+        return false;
+    }
+
+    int size() {
+        return spans.size();
+    }
+
+    // Number of lists of completed traces that hold the trace
+    void hold() {
+        holders++;
+    }
+
+    int release() {
+        return --holders;
+    }
+
+    void complete(long completedMillis) {
+        this.completedMillis = completedMillis;
+    }
+
+    List<RecordedSpan> getSpans() {
+        return spans;
+    }
+
+    boolean isError() {
+        return error;
+    }
+
+    long getCompletedMillis() {
+        return completedMillis;
+    }
+}
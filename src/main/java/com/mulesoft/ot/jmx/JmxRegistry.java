@@ -0,0 +1,60 @@
+package com.mulesoft.ot.jmx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+
+/**
+ * Registers the MBeans of the connector in the platform MBean server, under
+ * the domain com.mulesoft.ot
+ */
+public final class JmxRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(JmxRegistry.class);
+    private static final String DOMAIN = "com.mulesoft.ot";
+
+    private JmxRegistry() {
+    }
+
+    /**
+     * @return the name of the registered MBean, empty when the registration failed
+     */
+    public static Optional<ObjectName> register(String type, String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+            log.debug("MBean registered: {}", objectName);
+            return Optional.of(objectName);
+        } catch (Exception e) {
+            log.warn("MBean {} could not be registered: {}", type, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Name of the MBean of type and name in the domain of the connector
+     */
+    public static ObjectName objectName(String type, String name) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name == null ? "default" : name));
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            log.debug("MBean {} could not be unregistered: {}", objectName, e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.mulesoft.ot.listeners;
 
+import com.mulesoft.ot.processor.MuleNotificationProcessor;
+import com.mulesoft.ot.tracevault.DetachedSpan;
 import com.mulesoft.ot.tracevault.OtelConnection;
 import com.mulesoft.ot.Constants;
 import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.api.interception.InterceptionAction;
 import org.mule.runtime.api.interception.InterceptionEvent;
 import org.mule.runtime.api.interception.ProcessorParameterValue;
 import org.slf4j.Logger;
@@ -11,6 +14,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 /**
@@ -23,10 +27,22 @@ public class EventInterceptor implements org.mule.runtime.api.interception.Proce
 
     private static final Logger log = LoggerFactory.getLogger(EventInterceptor.class);
     private final Supplier<Optional<OtelConnection>> connectionSupplier = OtelConnection::get;
+    private final MuleNotificationProcessor muleNotificationProcessor;
+
+    public EventInterceptor() {
+        this(null);
+    }
+
+    public EventInterceptor(MuleNotificationProcessor muleNotificationProcessor) {
+        this.muleNotificationProcessor = muleNotificationProcessor;
+    }
 
     @Override
     public void before(ComponentLocation location, Map<String, ProcessorParameterValue> parameters,
             InterceptionEvent event) {
+        if (muleNotificationProcessor != null && !muleNotificationProcessor.isTraceContextVariable()) {
+            return;
+        }
 
         connectionSupplier.get().ifPresent(connection -> {
             if (log.isDebugEnabled()) {
@@ -41,4 +57,28 @@ public class EventInterceptor implements org.mule.runtime.api.interception.Proce
             event.addVariable(Constants.VARIABLE_TRACE_DATA, connection.getTraceContext(event.getCorrelationId()));
         });
     }
+
+    /**
+     * With the interceptor engine the span of the processor starts here and ends
+     * when the future of the action completes, the span is held by this call. The
+     * trace context is injected into the headers of the http:request operations.
+     */
+    @Override
+    public CompletableFuture<InterceptionEvent> around(ComponentLocation location,
+            Map<String, ProcessorParameterValue> parameters, InterceptionEvent event, InterceptionAction action) {
+        if (muleNotificationProcessor == null) {
+            return action.proceed();
+        }
+        if (!muleNotificationProcessor.isInterceptorEngine()) {
+            muleNotificationProcessor.propagate(location, parameters, event.getCorrelationId(), null);
+            return action.proceed();
+        }
+        Optional<DetachedSpan> span = muleNotificationProcessor.handleInterceptedStart(location, event);
+        muleNotificationProcessor.propagate(location, parameters, event.getCorrelationId(), span.orElse(null));
+        if (!span.isPresent()) {
+            return action.proceed();
+        }
+        return action.proceed().whenComplete((result, throwable) -> muleNotificationProcessor
+                .handleInterceptedEnd(span.get(), location, result != null ? result : event, throwable));
+    }
 }
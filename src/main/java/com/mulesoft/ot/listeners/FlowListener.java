@@ -1,6 +1,7 @@
 package com.mulesoft.ot.listeners;
 
 import com.mulesoft.ot.processor.MuleNotificationProcessor;
+import com.mulesoft.ot.replay.NotificationRecorder;
 import org.mule.runtime.api.notification.PipelineMessageNotification;
 import org.mule.runtime.api.notification.PipelineMessageNotificationListener;
 import org.slf4j.Logger;
@@ -9,15 +10,30 @@ import org.slf4j.LoggerFactory;
 public class FlowListener implements PipelineMessageNotificationListener<PipelineMessageNotification> {
 
     private final MuleNotificationProcessor muleNotificationProcessor;
+    private final NotificationRecorder notificationRecorder;
     private final Logger log = LoggerFactory.getLogger(FlowListener.class);
 
     public FlowListener(MuleNotificationProcessor muleNotificationProcessor) {
+        this(muleNotificationProcessor, null);
+    }
+
+    /**
+     * @param notificationRecorder
+     *            records the notifications before they are handled, null to not
+     *            record them
+     */
+    public FlowListener(MuleNotificationProcessor muleNotificationProcessor,
+            NotificationRecorder notificationRecorder) {
         log.debug("FlowListener registered");
         this.muleNotificationProcessor = muleNotificationProcessor;
+        this.notificationRecorder = notificationRecorder;
     }
 
     @Override
     public void onNotification(PipelineMessageNotification notification) {
+        if (notificationRecorder != null) {
+            notificationRecorder.recordFlow(notification);
+        }
         if (log.isDebugEnabled()) {
             String actionName = "Other type";
             switch (Integer.parseInt(notification.getAction().getIdentifier())) {
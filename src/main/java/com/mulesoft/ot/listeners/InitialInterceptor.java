@@ -1,9 +1,12 @@
 package com.mulesoft.ot.listeners;
 
+import com.mulesoft.ot.processor.MuleNotificationProcessor;
 import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.interception.ProcessorInterceptorFactory;
 import org.springframework.stereotype.Component;
 
+import javax.inject.Inject;
+
 /**
  * Intercepts the root processor flow. This class must be registered in
  * registry-bootstrap.properties
@@ -11,9 +14,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class InitialInterceptor implements ProcessorInterceptorFactory {
 
+    @Inject
+    MuleNotificationProcessor muleNotificationProcessor;
+
     @Override
     public org.mule.runtime.api.interception.ProcessorInterceptor get() {
-        return new EventInterceptor();
+        return new EventInterceptor(muleNotificationProcessor);
     }
 
     /**
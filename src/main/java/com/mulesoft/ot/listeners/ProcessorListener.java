@@ -1,6 +1,7 @@
 package com.mulesoft.ot.listeners;
 
 import com.mulesoft.ot.processor.MuleNotificationProcessor;
+import com.mulesoft.ot.replay.NotificationRecorder;
 import org.mule.runtime.api.notification.MessageProcessorNotification;
 import org.mule.runtime.api.notification.MessageProcessorNotificationListener;
 import org.slf4j.Logger;
@@ -9,15 +10,30 @@ import org.slf4j.LoggerFactory;
 public class ProcessorListener implements MessageProcessorNotificationListener<MessageProcessorNotification> {
 
     private final MuleNotificationProcessor muleNotificationProcessor;
+    private final NotificationRecorder notificationRecorder;
     private final Logger log = LoggerFactory.getLogger(ProcessorListener.class);
 
     public ProcessorListener(MuleNotificationProcessor muleNotificationProcessor) {
+        this(muleNotificationProcessor, null);
+    }
+
+    /**
+     * @param notificationRecorder
+     *            records the notifications before they are handled, null to not
+     *            record them
+     */
+    public ProcessorListener(MuleNotificationProcessor muleNotificationProcessor,
+            NotificationRecorder notificationRecorder) {
         log.debug("ProcessorListener registered");
         this.muleNotificationProcessor = muleNotificationProcessor;
+        this.notificationRecorder = notificationRecorder;
     }
 
     @Override
     public void onNotification(MessageProcessorNotification notification) {
+        if (notificationRecorder != null) {
+            notificationRecorder.recordProcessor(notification);
+        }
         if (log.isDebugEnabled()) {
             String actionName = "Other type";
             switch (Integer.parseInt(notification.getAction().getIdentifier())) {
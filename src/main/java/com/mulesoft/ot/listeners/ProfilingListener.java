@@ -0,0 +1,38 @@
+package com.mulesoft.ot.listeners;
+
+import com.mulesoft.ot.metrics.LocationProfiler;
+import org.mule.runtime.api.notification.MessageProcessorNotification;
+import org.mule.runtime.api.notification.MessageProcessorNotificationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the duration of every processor in the {@link LocationProfiler}, no
+ * spans are created.
+ */
+public class ProfilingListener implements MessageProcessorNotificationListener<MessageProcessorNotification> {
+
+    private final LocationProfiler locationProfiler;
+    private final Logger log = LoggerFactory.getLogger(ProfilingListener.class);
+
+    public ProfilingListener(LocationProfiler locationProfiler) {
+        log.debug("ProfilingListener registered");
+        this.locationProfiler = locationProfiler;
+    }
+
+    @Override
+    public void onNotification(MessageProcessorNotification notification) {
+        long now = System.nanoTime();
+        switch (Integer.parseInt(notification.getAction().getIdentifier())) {
+            case MessageProcessorNotification.MESSAGE_PROCESSOR_PRE_INVOKE :
+                locationProfiler.start(notification.getEvent().getContext().getId(),
+                        notification.getComponent().getLocation().getLocation(), now);
+                break;
+
+            case MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE :
+                locationProfiler.end(notification.getEvent().getContext().getId(),
+                        notification.getComponent().getLocation().getLocation(), now);
+                break;
+        }
+    }
+}
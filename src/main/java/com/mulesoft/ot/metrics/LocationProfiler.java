@@ -0,0 +1,218 @@
+package com.mulesoft.ot.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency profiler of the processors, without spans.
+ *
+ * <p>
+ * Every component location gets an index in a preallocated array of lock-free
+ * histograms the first time it is seen. The start of an invocation is kept
+ * until its end in a fixed table keyed by event context and location index, no
+ * allocation happens per event.
+ */
+public class LocationProfiler implements LocationProfilerMBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LocationProfiler.class);
+
+    public static final String LOCATION = "location";
+    public static final String COUNT = "count";
+    public static final String P50 = "p50Ms";
+    public static final String P99 = "p99Ms";
+    public static final String MAX = "maxMs";
+
+    private static final int MAX_LOCATIONS = 2048;
+
+    // In-flight invocations are kept in open-addressed tables of primitives, one
+    // per lock stripe. A start that finds no free slot in its probe window evicts
+    // the oldest invocation of the window.
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SLOTS = 2048;
+    private static final int PROBES = 8;
+    private static final long EMPTY = 0;
+
+    private final ConcurrentHashMap<String, Integer> locationIndexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicReferenceArray<String> locations = new AtomicReferenceArray<>(MAX_LOCATIONS);
+    private final LatencyHistogram[] histograms = new LatencyHistogram[MAX_LOCATIONS];
+    private final long[][] keys = new long[STRIPES][STRIPE_SLOTS];
+    private final long[][] starts = new long[STRIPES][STRIPE_SLOTS];
+    private final int[] sizes = new int[STRIPES];
+
+    public LocationProfiler() {
+        for (int i = 0; i < MAX_LOCATIONS; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void start(String eventContextId, String location, long nanoTime) {
+        int index = indexOf(location);
+        if (index < 0) {
+            return;
+        }
+        long key = key(eventContextId, index);
+        long hash = mix(key);
+        int stripe = (int) (hash >>> 58);
+        int home = (int) hash;
+        long[] stripeKeys = keys[stripe];
+        long[] stripeStarts = starts[stripe];
+        synchronized (stripeKeys) {
+            int free = -1;
+            int oldest = -1;
+            for (int probe = 0; probe < PROBES; probe++) {
+                int slot = (home + probe) & (STRIPE_SLOTS - 1);
+                long slotKey = stripeKeys[slot];
+                if (slotKey == key) {
+                    stripeStarts[slot] = nanoTime;
+                    return;
+                }
+                if (slotKey == EMPTY) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                } else if (oldest < 0 || stripeStarts[slot] - stripeStarts[oldest] < 0) {
+                    oldest = slot;
+                }
+            }
+            if (free < 0) {
+                log.debug("Profiler in-flight table full, discarding the oldest invocation");
+                free = oldest;
+            } else {
+                sizes[stripe]++;
+            }
+            stripeKeys[free] = key;
+            stripeStarts[free] = nanoTime;
+        }
+    }
+
+    public void end(String eventContextId, String location, long nanoTime) {
+        Integer index = locationIndexes.get(location);
+        if (index == null || index < 0) {
+            return;
+        }
+        long key = key(eventContextId, index);
+        long hash = mix(key);
+        int stripe = (int) (hash >>> 58);
+        int home = (int) hash;
+        long[] stripeKeys = keys[stripe];
+        long start;
+        synchronized (stripeKeys) {
+            int slot = find(stripeKeys, home, key);
+            if (slot < 0) {
+                return;
+            }
+            start = starts[stripe][slot];
+            stripeKeys[slot] = EMPTY;
+            sizes[stripe]--;
+        }
+        histograms[index].record(TimeUnit.NANOSECONDS.toMicros(nanoTime - start));
+    }
+
+    private static int find(long[] stripeKeys, int home, long key) {
+        for (int probe = 0; probe < PROBES; probe++) {
+            int slot = (home + probe) & (STRIPE_SLOTS - 1);
+            if (stripeKeys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // The hash of the event context stands for it, two invocations collide only
+    // when they share the location and the hash of their event contexts
+    private static long key(String eventContextId, int index) {
+        return ((long) eventContextId.hashCode() << 32) | (index + 1);
+    }
+
+    private static long mix(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private int indexOf(String location) {
+        Integer index = locationIndexes.get(location);
+        if (index != null) {
+            return index;
+        }
+        return locationIndexes.computeIfAbsent(location, key -> {
+            int next = nextIndex.getAndIncrement();
+            if (next >= MAX_LOCATIONS) {
+                nextIndex.set(MAX_LOCATIONS);
+                log.warn("Profiler limit of {} locations reached, location {} is not profiled", MAX_LOCATIONS,
+                        key);
+                return -1;
+            }
+            locations.set(next, key);
+            return next;
+        });
+    }
+
+    /**
+     * Latency of every location since the last reset
+     *
+     * @param reset
+     *            starts a new window after the dump
+     * @return location, count, p50Ms, p99Ms and maxMs of every location
+     */
+    public List<Map<String, Object>> dump(boolean reset) {
+        int size = Math.min(nextIndex.get(), MAX_LOCATIONS);
+        List<Map<String, Object>> profile = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String location = locations.get(i);
+            if (location == null) {
+                continue;
+            }
+            LatencyHistogram.Snapshot snapshot = histograms[i].snapshot(reset);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put(LOCATION, location);
+            row.put(COUNT, snapshot.getCount());
+            row.put(P50, snapshot.getValueAtPercentile(50) / 1000.0);
+            row.put(P99, snapshot.getValueAtPercentile(99) / 1000.0);
+            row.put(MAX, snapshot.getMax() / 1000.0);
+            profile.add(row);
+        }
+        return profile;
+    }
+
+    @Override
+    public String dumpProfile(boolean reset) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-80s %10s %10s %10s %10s%n", LOCATION, COUNT, P50, P99, MAX));
+        dump(reset).forEach(row -> builder.append(String.format("%-80s %10d %10.3f %10.3f %10.3f%n",
+                row.get(LOCATION), row.get(COUNT), row.get(P50), row.get(P99), row.get(MAX))));
+        return builder.toString();
+    }
+
+    @Override
+    public int getLocationCount() {
+        return Math.min(nextIndex.get(), MAX_LOCATIONS);
+    }
+
+    @Override
+    public int getInFlightCount() {
+        int count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (keys[stripe]) {
+                count += sizes[stripe];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mulesoft.ot.metrics;
+
+/**
+ * JMX interface of the {@link LocationProfiler}
+ */
+public interface LocationProfilerMBean {
+
+    /**
+     * Count, p50, p99 and max latency in milliseconds of every location
+     *
+     * @param reset
+     *            starts a new window after the dump
+     */
+    String dumpProfile(boolean reset);
+
+    int getLocationCount();
+
+    int getInFlightCount();
+}
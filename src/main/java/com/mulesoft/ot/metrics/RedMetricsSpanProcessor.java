@@ -0,0 +1,195 @@
+package com.mulesoft.ot.metrics;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.opentelemetry.semconv.trace.attributes.SemanticAttributes.HTTP_ROUTE;
+import static io.opentelemetry.semconv.trace.attributes.SemanticAttributes.HTTP_STATUS_CODE;
+
+/**
+ * Rate, errors and duration (RED) metrics of the flows, derived from the root
+ * spans when they end.
+ *
+ * <p>
+ * Every series, keyed by flow name, http.route and status code, holds striped
+ * counters and a lock-free histogram. The values are exported as OTLP metrics
+ * by the meter registered in {@link #register(Meter)}:
+ * <ul>
+ * <li>mule.flow.requests and mule.flow.errors, cumulative counters</li>
+ * <li>mule.flow.duration.quantile, p50/p90/p99/max of the export interval
+ * calculated in process</li>
+ * <li>mule.flow.duration, histogram recorded in the context of the root span,
+ * so the SDK attaches trace exemplars to it</li>
+ * </ul>
+ */
+public class RedMetricsSpanProcessor implements SpanProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(RedMetricsSpanProcessor.class);
+
+    // Upper limit of series, the remaining requests are accounted in an overflow
+    // series
+    private static final int MAX_SERIES = 2000;
+    private static final String OVERFLOW = "other";
+    private static final String NO_VALUE = "";
+
+    private static final AttributeKey<String> FLOW_NAME = AttributeKey.stringKey(Constants.SERVICE_FLOW_NAME);
+    private static final AttributeKey<String> STATUS_CODE = AttributeKey.stringKey(HTTP_STATUS_CODE.getKey());
+    private static final AttributeKey<String> QUANTILE = AttributeKey.stringKey("quantile");
+
+    private final ConcurrentHashMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+    private volatile DoubleHistogram duration;
+
+    /**
+     * Registers the instruments that export the metrics
+     */
+    public void register(Meter meter) {
+        meter.counterBuilder("mule.flow.requests").setDescription("Requests processed by the flow").setUnit("1")
+                .buildWithCallback(measurement -> series.values()
+                        .forEach(s -> measurement.record(s.requests.sum(), s.attributes)));
+        meter.counterBuilder("mule.flow.errors").setDescription("Requests of the flow that ended with error")
+                .setUnit("1").buildWithCallback(measurement -> series.values()
+                        .forEach(s -> measurement.record(s.errors.sum(), s.attributes)));
+        meter.gaugeBuilder("mule.flow.duration.quantile")
+                .setDescription("Duration percentiles of the flow in the last export interval").setUnit("ms")
+                .buildWithCallback(measurement -> series.values().forEach(s -> {
+                    LatencyHistogram.Snapshot snapshot = s.duration.snapshot(true);
+                    measurement.record(toMillis(snapshot.getValueAtPercentile(50)), s.quantiles[0]);
+                    measurement.record(toMillis(snapshot.getValueAtPercentile(90)), s.quantiles[1]);
+                    measurement.record(toMillis(snapshot.getValueAtPercentile(99)), s.quantiles[2]);
+                    measurement.record(toMillis(snapshot.getMax()), s.quantiles[3]);
+                }));
+        duration = meter.histogramBuilder("mule.flow.duration").setDescription("Duration of the flow")
+                .setUnit("ms").build();
+        log.debug("RED metrics registered");
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        SpanContext parent = span.getParentSpanContext();
+        if (parent.isValid() && !parent.isRemote()) {
+            return;
+        }
+        String flowName = span.getAttribute(FLOW_NAME);
+        if (flowName == null) {
+            return;
+        }
+        boolean error = StatusCode.ERROR.equals(span.toSpanData().getStatus().getStatusCode());
+        Series current = getSeries(new SeriesKey(flowName, valueOrEmpty(span.getAttribute(HTTP_ROUTE)),
+                valueOrEmpty(span.getAttribute(STATUS_CODE))));
+        long latencyNanos = span.getLatencyNanos();
+        current.requests.increment();
+        if (error) {
+            current.errors.increment();
+        }
+        current.duration.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+        DoubleHistogram histogram = duration;
+        if (histogram != null) {
+            histogram.record(latencyNanos / 1_000_000.0, current.attributes,
+                    Context.root().with(Span.wrap(span.getSpanContext())));
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private Series getSeries(SeriesKey key) {
+        Series current = series.get(key);
+        if (current != null) {
+            return current;
+        }
+        if (series.size() >= MAX_SERIES) {
+            return series.computeIfAbsent(new SeriesKey(OVERFLOW, OVERFLOW, OVERFLOW), Series::new);
+        }
+        return series.computeIfAbsent(key, Series::new);
+    }
+
+    private static String valueOrEmpty(String value) {
+        return value == null ? NO_VALUE : value;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class SeriesKey {
+        private final String flowName;
+        private final String route;
+        private final String statusCode;
+        private final int hash;
+
+        private SeriesKey(String flowName, String route, String statusCode) {
+            this.flowName = flowName;
+            this.route = route;
+            this.statusCode = statusCode;
+            this.hash = Objects.hash(flowName, route, statusCode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof SeriesKey))
+                return false;
+            SeriesKey that = (SeriesKey) o;
+            return flowName.equals(that.flowName) && route.equals(that.route) && statusCode.equals(that.statusCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Series {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram duration = new LatencyHistogram();
+        private final Attributes attributes;
+        private final Attributes[] quantiles;
+
+        private Series(SeriesKey key) {
+            AttributesBuilder builder = Attributes.builder().put(FLOW_NAME, key.flowName);
+            if (!key.route.isEmpty()) {
+                builder.put(HTTP_ROUTE, key.route);
+            }
+            if (!key.statusCode.isEmpty()) {
+                builder.put(STATUS_CODE, key.statusCode);
+            }
+            attributes = builder.build();
+            quantiles = new Attributes[]{attributes.toBuilder().put(QUANTILE, "p50").build(),
+                    attributes.toBuilder().put(QUANTILE, "p90").build(),
+                    attributes.toBuilder().put(QUANTILE, "p99").build(),
+                    attributes.toBuilder().put(QUANTILE, "max").build()};
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mulesoft.ot.metrics;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time and allocated bytes of the current thread when a span starts.
+ *
+ * <p>
+ * When the span ends in the same thread the difference is recorded in the
+ * span. When the event switched threads in between the numbers of a single
+ * thread are not the cost of the span, so only the thread switch is recorded.
+ */
+public final class ResourceSample {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceSample.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = THREADS
+            instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) THREADS : null;
+    private static final long UNSUPPORTED = -1;
+
+    private final long threadId;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    private ResourceSample(long threadId, long cpuNanos, long allocatedBytes) {
+        this.threadId = threadId;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Enables the measurement of CPU time and allocated bytes in the JVM
+     *
+     * @return true when at least one of them is supported
+     */
+    public static boolean enable() {
+        boolean supported = false;
+        try {
+            if (THREADS.isCurrentThreadCpuTimeSupported()) {
+                if (!THREADS.isThreadCpuTimeEnabled()) {
+                    THREADS.setThreadCpuTimeEnabled(true);
+                }
+                supported = true;
+            }
+            if (ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemorySupported()) {
+                if (!ALLOCATIONS.isThreadAllocatedMemoryEnabled()) {
+                    ALLOCATIONS.setThreadAllocatedMemoryEnabled(true);
+                }
+                supported = true;
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            log.warn("Thread CPU time and allocated bytes can not be measured: {}", e.getMessage());
+        }
+        return supported;
+    }
+
+    public static ResourceSample start() {
+        long threadId = Thread.currentThread().getId();
+        return new ResourceSample(threadId, cpuNanos(), allocatedBytes(threadId));
+    }
+
+    /**
+     * Records the resources used since the start in the span
+     */
+    public void end(Span span) {
+        if (Thread.currentThread().getId() != threadId) {
+            span.setAttribute(Constants.SPAN_THREAD_SWITCH, true);
+            return;
+        }
+        long cpu = cpuNanos();
+        if (cpu != UNSUPPORTED && cpuNanos != UNSUPPORTED) {
+            span.setAttribute(Constants.SPAN_CPU_TIME, cpu - cpuNanos);
+        }
+        long allocated = allocatedBytes(threadId);
+        if (allocated != UNSUPPORTED && allocatedBytes != UNSUPPORTED) {
+            span.setAttribute(Constants.SPAN_ALLOCATED_BYTES, allocated - allocatedBytes);
+        }
+    }
+
+    private static long cpuNanos() {
+        return THREADS.isThreadCpuTimeEnabled() ? THREADS.getCurrentThreadCpuTime() : UNSUPPORTED;
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemoryEnabled()
+                ? ALLOCATIONS.getThreadAllocatedBytes(threadId)
+                : UNSUPPORTED;
+    }
+}
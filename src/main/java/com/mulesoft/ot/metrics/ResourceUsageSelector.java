@@ -0,0 +1,47 @@
+package com.mulesoft.ot.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the spans that record CPU time and allocated bytes: the locations
+ * that start with one of the configured prefixes, a flow name selects the flow
+ * and its processors, and of them a ratio of the spans.
+ */
+public class ResourceUsageSelector {
+
+    private final List<String> locations;
+    private final double ratio;
+
+    /**
+     * @param locations
+     *            location prefixes separated by commas, empty selects every
+     *            location
+     * @param ratio
+     *            ratio of the spans of the selected locations that are measured
+     */
+    public ResourceUsageSelector(String locations, double ratio) {
+        this.locations = locations == null || locations.trim().isEmpty()
+                ? Collections.emptyList()
+                : Arrays.stream(locations.split(",")).map(String::trim).filter(location -> !location.isEmpty())
+                        .collect(Collectors.toList());
+        this.ratio = Math.min(1.0, Math.max(0, ratio));
+    }
+
+    /**
+     * @return a sample of the current thread when the span is measured, null
+     *         otherwise
+     */
+    public ResourceSample start(String location) {
+        if (ratio <= 0 || (ratio < 1.0 && ThreadLocalRandom.current().nextDouble() >= ratio)) {
+            return null;
+        }
+        if (!locations.isEmpty() && locations.stream().noneMatch(location::startsWith)) {
+            return null;
+        }
+        return ResourceSample.start();
+    }
+}
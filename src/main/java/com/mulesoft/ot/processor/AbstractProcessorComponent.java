@@ -7,6 +7,7 @@ import io.opentelemetry.api.trace.SpanKind;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.message.Error;
 import org.mule.runtime.api.metadata.TypedValue;
 import org.mule.runtime.api.notification.EnrichedServerNotification;
@@ -67,6 +68,17 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
         return getTraceComponentBuilderFor(notification);
     }
 
+    @Override
+    public TraceMetadata getEndTraceComponent(Component component, Event event) {
+        TraceMetadata traceMetadata = new TraceMetadata();
+        traceMetadata.setName(component.getLocation().getRootContainerName());
+        traceMetadata.setCorrelationId(event.getCorrelationId());
+        traceMetadata.setLocation(component.getLocation().getLocation());
+        traceMetadata.setTags(new HashMap<>());
+        traceMetadata.setErrorMessage(event.getError().map(Error::getDescription).orElse(null));
+        return traceMetadata;
+    }
+
     protected TraceMetadata getTraceComponentBuilderFor(EnrichedServerNotification notification) {
         TraceMetadata traceMetadata = new TraceMetadata();
         traceMetadata.setName(notification.getResourceIdentifier());
@@ -98,13 +110,17 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
 
     @Override
     public TraceMetadata getStartTraceComponent(EnrichedServerNotification notification) {
+        return getStartTraceComponent(notification.getInfo().getComponent(), notification.getEvent());
+    }
+
+    @Override
+    public TraceMetadata getStartTraceComponent(Component component, Event event) {
         Map<String, String> tags = new HashMap<>();
-        String processorName = notification.getComponent().getIdentifier().getNamespace();
+        String processorName = component.getIdentifier().getNamespace();
         tags.put(Constants.SERVICE_PROCESSOR_NAMESPACE, processorName);
-        tags.put(Constants.SERVICE_PROCESSOR_NAME, notification.getComponent().getIdentifier().getName());
+        tags.put(Constants.SERVICE_PROCESSOR_NAME, component.getIdentifier().getName());
 
-        ComponentWrapper wrapper = new ComponentWrapper(notification.getInfo().getComponent(),
-                configurationComponentLocator);
+        ComponentWrapper wrapper = new ComponentWrapper(component, configurationComponentLocator);
 
         if (wrapper.getDocName() != null) {
             tags.put(Constants.SERVICE_PROCESSOR_DOCNAME, wrapper.getDocName());
@@ -114,19 +130,18 @@ public abstract class AbstractProcessorComponent implements ProcessorComponent {
             tags.put(Constants.PROCESSOR_CONFIGREF, wrapper.getConfigRef());
         }
 
-        tags.putAll(getAttributes(notification.getInfo().getComponent(),
-                notification.getEvent().getMessage().getAttributes()));
+        tags.putAll(getAttributes(component, event.getMessage().getAttributes()));
 
         String spanName = processorName.concat(":")
                 .concat(tags.getOrDefault(Constants.SERVICE_PROCESSOR_DOCNAME, processorName));
 
         TraceMetadata traceMetadata = new TraceMetadata();
-        traceMetadata.setName(notification.getComponent().getLocation().getLocation());
-        traceMetadata.setLocation(notification.getComponent().getLocation().getLocation());
+        traceMetadata.setName(component.getLocation().getLocation());
+        traceMetadata.setLocation(component.getLocation().getLocation());
         traceMetadata.setSpanName(spanName);
         traceMetadata.setTags(tags);
         traceMetadata.setSpanKind(getSpanKind());
-        traceMetadata.setCorrelationId(getTransactionId(notification));
+        traceMetadata.setCorrelationId(event.getCorrelationId());
         return traceMetadata;
     }
 }
@@ -10,6 +10,7 @@ import javax.xml.namespace.QName;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ComponentWrapper {
 
@@ -20,6 +21,12 @@ public class ComponentWrapper {
     private final ConfigurationComponentLocator configurationComponentLocator;
     private static final Logger log = LoggerFactory.getLogger(ComponentWrapper.class);
 
+    // The global configurations do not change while the application runs, their
+    // parameters are resolved once per config-ref. A configuration not found is
+    // not cached, it is searched again the next time
+    private static final Map<String, Map<String, String>> CONFIG_CONNECTION_PARAMETERS = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, String>> CONFIG_PARAMETERS = new ConcurrentHashMap<>();
+
     public ComponentWrapper(Component component, ConfigurationComponentLocator configurationComponentLocator) {
         this.component = component;
         this.configurationComponentLocator = configurationComponentLocator;
@@ -53,28 +60,45 @@ public class ComponentWrapper {
 
     public Map<String, String> getConfigConnectionParameters() {
         String componentConfigRef = getConfigRef();
+        if (componentConfigRef == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> found = CONFIG_CONNECTION_PARAMETERS.computeIfAbsent(componentConfigRef,
+                this::findConfigConnectionParameters);
+        return found != null ? found : Collections.emptyMap();
+    }
+
+    private Map<String, String> findConfigConnectionParameters(String componentConfigRef) {
         try {
             return configurationComponentLocator
                     .find(Location.builder().globalName(componentConfigRef).addConnectionPart().build())
                     .map(component1 -> new ComponentWrapper(component1, configurationComponentLocator))
-                    .map(this::toExtendedParameters).orElse(Collections.emptyMap());
+                    .map(this::toExtendedParameters).orElse(null);
         } catch (Exception ex) {
             log.trace("Failed to extract connection parameters for {}. Ignoring this failure - {}", componentConfigRef,
                     ex.getMessage());
-            return Collections.emptyMap();
+            return null;
         }
     }
 
     public Map<String, String> getConfigParameters() {
         String componentConfigRef = getConfigRef();
+        if (componentConfigRef == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> found = CONFIG_PARAMETERS.computeIfAbsent(componentConfigRef, this::findConfigParameters);
+        return found != null ? found : Collections.emptyMap();
+    }
+
+    private Map<String, String> findConfigParameters(String componentConfigRef) {
         try {
             return configurationComponentLocator.find(Location.builder().globalName(componentConfigRef).build())
                     .map(componentVar -> new ComponentWrapper(componentVar, configurationComponentLocator))
-                    .map(this::toExtendedParameters).orElse(Collections.emptyMap());
+                    .map(this::toExtendedParameters).orElse(null);
         } catch (Exception ex) {
             log.trace("Failed to extract connection parameters for {}. Ignoring this failure - {}", componentConfigRef,
                     ex.getMessage());
-            return Collections.emptyMap();
+            return null;
         }
     }
 
@@ -82,6 +106,14 @@ public class ComponentWrapper {
         Map<String, String> map = new HashMap<>(componentWrapper.getParameters());
         map.put(COMPONENT_NAMESPACE_KEY, componentWrapper.getComponent().getIdentifier().getNamespace());
         map.put(COMPONENT_NAME_KEY, componentWrapper.getComponent().getIdentifier().getName());
-        return map;
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Forgets the parameters of the global configurations
+     */
+    public static void clearConfigCache() {
+        CONFIG_CONNECTION_PARAMETERS.clear();
+        CONFIG_PARAMETERS.clear();
     }
 }
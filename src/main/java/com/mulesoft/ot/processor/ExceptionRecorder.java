@@ -0,0 +1,144 @@
+package com.mulesoft.ot.processor;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.Span;
+import org.mule.runtime.api.message.Error;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.opentelemetry.semconv.trace.attributes.SemanticAttributes.*;
+
+/**
+ * Records errors into the spans without rendering the full stack trace for
+ * every occurrence.
+ *
+ * <p>
+ * The stack trace is truncated to maxStackDepth frames. Every exception gets a
+ * fingerprint built from the exception class and its top frames, the first
+ * occurrence of a fingerprint inside the time window is recorded with message
+ * and stack trace, the following ones only with the fingerprint and the Mule
+ * error type/description.
+ */
+public class ExceptionRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(ExceptionRecorder.class);
+
+    // Number of frames used to build the fingerprint
+    private static final int FINGERPRINT_FRAMES = 5;
+
+    // Upper limit of fingerprints kept in memory
+    private static final int MAX_FINGERPRINTS = 1024;
+
+    // Upper limit of causes rendered in the stack trace
+    private static final int MAX_CAUSES = 5;
+
+    private final int maxStackDepth;
+    private final long windowMillis;
+    private final ConcurrentHashMap<String, Long> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxStackDepth
+     *            maximum number of frames rendered per exception, 0 records no
+     *            stack trace
+     * @param windowSeconds
+     *            time window where a repeated fingerprint is recorded only once
+     *            with the full detail, 0 disables the deduplication
+     */
+    public ExceptionRecorder(int maxStackDepth, int windowSeconds) {
+        this.maxStackDepth = Math.max(0, maxStackDepth);
+        this.windowMillis = Math.max(0, windowSeconds) * 1000L;
+    }
+
+    public void record(Span span, Throwable exception, Error error) {
+        Throwable throwable = exception != null ? exception : (error != null ? error.getCause() : null);
+        if (throwable == null && error == null) {
+            return;
+        }
+
+        AttributesBuilder attributes = Attributes.builder();
+        if (error != null) {
+            if (error.getErrorType() != null) {
+                attributes.put(Constants.MULE_ERROR_TYPE,
+                        error.getErrorType().getNamespace() + ":" + error.getErrorType().getIdentifier());
+            }
+            if (error.getDescription() != null) {
+                attributes.put(Constants.MULE_ERROR_DESCRIPTION, error.getDescription());
+            }
+        }
+
+        if (throwable != null) {
+            StackTraceElement[] frames = throwable.getStackTrace();
+            String fingerprint = fingerprint(throwable, frames);
+            attributes.put(EXCEPTION_TYPE, throwable.getClass().getName());
+            attributes.put(Constants.EXCEPTION_FINGERPRINT, fingerprint);
+            if (isFirstOccurrence(fingerprint)) {
+                if (throwable.getMessage() != null) {
+                    attributes.put(EXCEPTION_MESSAGE, throwable.getMessage());
+                }
+                if (maxStackDepth > 0) {
+                    attributes.put(EXCEPTION_STACKTRACE, stackTrace(throwable, frames));
+                }
+            } else {
+                log.trace("Repeated exception, fingerprint: {}", fingerprint);
+            }
+        }
+        span.addEvent(EXCEPTION_EVENT_NAME, attributes.build());
+    }
+
+    private boolean isFirstOccurrence(String fingerprint) {
+        if (windowMillis == 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long lastRecorded = fingerprints.get(fingerprint);
+        if (lastRecorded == null) {
+            if (fingerprints.size() >= MAX_FINGERPRINTS) {
+                fingerprints.values().removeIf(recorded -> now - recorded >= windowMillis);
+                if (fingerprints.size() >= MAX_FINGERPRINTS) {
+                    fingerprints.clear();
+                }
+            }
+            return fingerprints.putIfAbsent(fingerprint, now) == null;
+        }
+        return now - lastRecorded >= windowMillis && fingerprints.replace(fingerprint, lastRecorded, now);
+    }
+
+    private String fingerprint(Throwable throwable, StackTraceElement[] frames) {
+        long hash = throwable.getClass().getName().hashCode();
+        int limit = Math.min(FINGERPRINT_FRAMES, frames.length);
+        for (int i = 0; i < limit; i++) {
+            hash = 31 * hash + frames[i].getClassName().hashCode();
+            hash = 31 * hash + frames[i].getMethodName().hashCode();
+            hash = 31 * hash + frames[i].getLineNumber();
+        }
+        return Long.toHexString(hash);
+    }
+
+    private String stackTrace(Throwable throwable, StackTraceElement[] frames) {
+        StringBuilder builder = new StringBuilder(256);
+        appendFrames(builder, throwable, frames);
+        Throwable cause = throwable.getCause();
+        for (int i = 0; cause != null && cause != throwable && i < MAX_CAUSES; i++) {
+            builder.append("\nCaused by: ");
+            appendFrames(builder, cause, cause.getStackTrace());
+            throwable = cause;
+            cause = cause.getCause();
+        }
+        return builder.toString();
+    }
+
+    private void appendFrames(StringBuilder builder, Throwable throwable, StackTraceElement[] frames) {
+        builder.append(throwable);
+        int limit = Math.min(maxStackDepth, frames.length);
+        for (int i = 0; i < limit; i++) {
+            builder.append("\n\tat ").append(frames[i]);
+        }
+        if (frames.length > limit) {
+            builder.append("\n\t... ").append(frames.length - limit).append(" more");
+        }
+    }
+}
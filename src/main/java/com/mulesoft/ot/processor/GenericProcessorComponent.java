@@ -0,0 +1,34 @@
+package com.mulesoft.ot.processor;
+
+import org.mule.runtime.api.component.ComponentIdentifier;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * INTERNAL span of a processor without a dedicated component, like ee:transform
+ * or db:select. It is not registered as a service, it is used only for the
+ * namespaces listed in the internal span namespaces.
+ */
+public class GenericProcessorComponent extends AbstractProcessorComponent {
+
+    @Override
+    public boolean canHandle(ComponentIdentifier componentIdentifier) {
+        return true;
+    }
+
+    @Override
+    protected String getNamespace() {
+        return "";
+    }
+
+    @Override
+    protected List<String> getOperations() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected List<String> getSources() {
+        return Collections.emptyList();
+    }
+}
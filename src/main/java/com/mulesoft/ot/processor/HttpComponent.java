@@ -1,6 +1,7 @@
 package com.mulesoft.ot.processor;
 
 import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.control.TracingControlsManager;
 import com.mulesoft.ot.tracevault.ContextPropagation;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
@@ -9,6 +10,7 @@ import org.mule.extension.http.api.HttpRequestAttributes;
 import org.mule.extension.http.api.HttpResponseAttributes;
 import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.message.Error;
 import org.mule.runtime.api.message.Message;
 import org.mule.runtime.api.metadata.TypedValue;
@@ -52,11 +54,17 @@ public class HttpComponent extends AbstractProcessorComponent {
 
     @Override
     public TraceMetadata getEndTraceComponent(EnrichedServerNotification notification) {
-        TraceMetadata endTraceMetadata = super.getEndTraceComponent(notification);
+        return getResponseTraceComponent(super.getEndTraceComponent(notification), notification.getEvent());
+    }
+
+    @Override
+    public TraceMetadata getEndTraceComponent(Component component, Event event) {
+        return getResponseTraceComponent(super.getEndTraceComponent(component, event), event);
+    }
 
+    private TraceMetadata getResponseTraceComponent(TraceMetadata endTraceMetadata, Event event) {
         // If error in http:request, then the responseMessage will be on error obj
-        Message responseMessage = notification.getEvent().getError().map(Error::getErrorMessage)
-                .orElse(notification.getEvent().getMessage());
+        Message responseMessage = event.getError().map(Error::getErrorMessage).orElse(event.getMessage());
         TypedValue<HttpResponseAttributes> responseAttributes = responseMessage.getAttributes();
 
         if (responseAttributes.getValue() == null) {
@@ -68,7 +76,9 @@ public class HttpComponent extends AbstractProcessorComponent {
         HttpResponseAttributes attributes = responseAttributes.getValue();
         Map<String, String> tags = new HashMap<>();
         tags.put(HTTP_STATUS_CODE.getKey(), Integer.toString(attributes.getStatusCode()));
-        tags.put(HTTP_RESPONSE_CONTENT_LENGTH.getKey(), attributes.getHeaders().get("content-length"));
+        if (TracingControlsManager.getInstance().get().isCaptureHttpHeaders()) {
+            tags.put(HTTP_RESPONSE_CONTENT_LENGTH.getKey(), attributes.getHeaders().get("content-length"));
+        }
         endTraceMetadata.setStatusCode(getSpanStatus(false, attributes.getStatusCode()));
 
         if (endTraceMetadata.getTags() != null) {
@@ -79,16 +89,15 @@ public class HttpComponent extends AbstractProcessorComponent {
     }
 
     @Override
-    public TraceMetadata getStartTraceComponent(EnrichedServerNotification notification) {
+    public TraceMetadata getStartTraceComponent(Component component, Event event) {
 
-        TraceMetadata traceMetadata = super.getStartTraceComponent(notification);
-        Map<String, String> requestTags = getAttributes(notification.getInfo().getComponent(),
-                notification.getEvent().getMessage().getAttributes());
+        TraceMetadata traceMetadata = super.getStartTraceComponent(component, event);
+        Map<String, String> requestTags = getAttributes(component, event.getMessage().getAttributes());
         requestTags.putAll(traceMetadata.getTags());
 
-        traceMetadata.setName(notification.getResourceIdentifier());
+        traceMetadata.setName(component.getLocation().getRootContainerName());
         traceMetadata.setTags(requestTags);
-        traceMetadata.setLocation(notification.getComponent().getLocation().getLocation());
+        traceMetadata.setLocation(component.getLocation().getLocation());
         traceMetadata.setSpanName(requestTags.get(HTTP_ROUTE.getKey()));
         traceMetadata.setCorrelationId(traceMetadata.getCorrelationId());
         traceMetadata.setSpanKind(getSpanKind());
@@ -193,12 +202,14 @@ public class HttpComponent extends AbstractProcessorComponent {
     }
 
     private Map<String, String> requestHeaders(HttpRequestAttributes attributes) {
-        log.trace("Request headers: {}", attributes.getHeaders().toString());
         Map<String, String> tags = new HashMap<>();
-        tags.put(NET_HOST_NAME.getKey(), attributes.getHeaders().get("host"));
-        tags.put(HTTP_USER_AGENT.getKey(), attributes.getHeaders().get("user-agent"));
-        tags.put(HTTP_REQUEST_CONTENT_LENGTH.getKey(), attributes.getHeaders().get("content-length"));
-        tags.put(Constants.HTTP_CONTENT_TYPE, attributes.getHeaders().get("content-type"));
+        if (TracingControlsManager.getInstance().get().isCaptureHttpHeaders()) {
+            log.trace("Request headers: {}", attributes.getHeaders());
+            tags.put(NET_HOST_NAME.getKey(), attributes.getHeaders().get("host"));
+            tags.put(HTTP_USER_AGENT.getKey(), attributes.getHeaders().get("user-agent"));
+            tags.put(HTTP_REQUEST_CONTENT_LENGTH.getKey(), attributes.getHeaders().get("content-length"));
+            tags.put(Constants.HTTP_CONTENT_TYPE, attributes.getHeaders().get("content-type"));
+        }
         tags.put(HTTP_METHOD.getKey(), attributes.getMethod());
         tags.put(HTTP_SCHEME.getKey(), attributes.getScheme());
         tags.put(HTTP_ROUTE.getKey(), attributes.getListenerPath());
@@ -0,0 +1,63 @@
+package com.mulesoft.ot.processor;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.tracevault.OtelConnection;
+import io.opentelemetry.context.Context;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
+import org.mule.runtime.api.interception.ProcessorParameterValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Injects the trace context into the headers of the http:request operations.
+ *
+ * <p>
+ * The interceptor receives the parameters of the operation already resolved,
+ * and the operation uses the same values, so the propagation headers (W3C
+ * traceparent, B3, as configured in otel.propagators) are added to the map of
+ * the headers parameter. The context is the one of the span of the request,
+ * the remote server span becomes its child.
+ */
+public class HttpRequestPropagator {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpRequestPropagator.class);
+
+    private static final String REQUEST = "request";
+    private static final String HEADERS = "headers";
+
+    public boolean isHttpRequest(ComponentLocation location) {
+        ComponentIdentifier identifier = location.getComponentIdentifier().getIdentifier();
+        return Constants.HTTP_NAMESPACE.equalsIgnoreCase(identifier.getNamespace())
+                && REQUEST.equals(identifier.getName());
+    }
+
+    /**
+     * @return true when the headers were injected
+     */
+    @SuppressWarnings("unchecked")
+    public boolean inject(OtelConnection connection, Context context, ComponentLocation location,
+            Map<String, ProcessorParameterValue> parameters) {
+        ProcessorParameterValue headers = parameters.get(HEADERS);
+        if (headers == null) {
+            log.debug("No headers parameter in {}, trace context not injected", location.getLocation());
+            return false;
+        }
+        try {
+            Object value = headers.resolveValue();
+            if (!(value instanceof Map)) {
+                log.debug("Headers of {} are not a map, trace context not injected", location.getLocation());
+                return false;
+            }
+            connection.inject(context, (Map<String, String>) value, OtelConnection.HashMapTextMapSetter.INSTANCE);
+            return true;
+        } catch (UnsupportedOperationException e) {
+            log.debug("Headers of {} are immutable, trace context not injected", location.getLocation());
+        } catch (Throwable e) {
+            log.debug("Headers of " + location.getLocation() + " not resolved, trace context not injected", e);
+        }
+        return false;
+    }
+}
@@ -1,20 +1,40 @@
 package com.mulesoft.ot.processor;
 
 import com.mulesoft.ot.ConnectorConfiguration;
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.api.TracingEngine;
+import com.mulesoft.ot.control.OverheadGovernor;
+import com.mulesoft.ot.control.TracingControls;
+import com.mulesoft.ot.control.TracingControlsManager;
+import com.mulesoft.ot.metrics.ResourceSample;
+import com.mulesoft.ot.metrics.ResourceUsageSelector;
+import com.mulesoft.ot.tracevault.DeferredSpan;
+import com.mulesoft.ot.tracevault.DetachedSpan;
 import com.mulesoft.ot.tracevault.OtelConnection;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.component.ComponentIdentifier;
+import org.mule.runtime.api.component.location.ComponentLocation;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.component.location.Location;
+import org.mule.runtime.api.event.Event;
+import org.mule.runtime.api.interception.ProcessorParameterValue;
 import org.mule.runtime.api.message.Error;
 import org.mule.runtime.api.notification.MessageProcessorNotification;
 import org.mule.runtime.api.notification.PipelineMessageNotification;
+import org.mule.runtime.core.privileged.exception.EventProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -27,20 +47,87 @@ public class MuleNotificationProcessor {
 
     private Supplier<OtelConnection> connectionSupplier;
     private OtelConnection otelConnection;
+    private ExceptionRecorder exceptionRecorder;
+    private TracingEngine tracingEngine = TracingEngine.NOTIFICATIONS;
+    private final TracingControlsManager controls = TracingControlsManager.getInstance();
+    private OverheadGovernor overheadGovernor;
+    private ResourceUsageSelector resourceUsage;
+    private SchedulingDelayRecorder schedulingDelay;
+    private boolean traceContextVariable = true;
+    private HttpRequestPropagator httpRequestPropagator;
+    private boolean deferredSpans;
+
+    // Components of the intercepted locations, resolved once per location
+    private final Map<String, Optional<Component>> components = new ConcurrentHashMap<>();
 
     @Inject
     ConfigurationComponentLocator configurationComponentLocator;
 
     private ProcessorComponentService processorComponentService;
+    private volatile ProcessorComponent genericProcessorComponent;
 
     public MuleNotificationProcessor() {
     }
 
-    public void init(Supplier<OtelConnection> connectionSupplier) {
+    /**
+     * @param overheadGovernor
+     *            receives the time spent by the handlers, null when the overhead
+     *            is not governed
+     * @param resourceUsage
+     *            selects the spans that record CPU time and allocated bytes, null
+     *            when they are not recorded
+     * @param schedulingDelay
+     *            records the waits for a thread, null when they are not recorded
+     */
+    public void init(Supplier<OtelConnection> connectionSupplier, ExceptionRecorder exceptionRecorder,
+            TracingEngine tracingEngine, OverheadGovernor overheadGovernor, ResourceUsageSelector resourceUsage,
+            SchedulingDelayRecorder schedulingDelay) {
         this.connectionSupplier = connectionSupplier;
+        this.exceptionRecorder = exceptionRecorder;
+        this.tracingEngine = tracingEngine;
+        this.overheadGovernor = overheadGovernor;
+        this.resourceUsage = resourceUsage;
+        this.schedulingDelay = schedulingDelay;
+        // A connection of a previous start is shut down
+        this.otelConnection = null;
         processorComponentService = ProcessorComponentService.getInstance();
     }
 
+    /**
+     * @param traceContextVariable
+     *            every processor gets the trace context in the variable
+     *            openTelemetryTrace
+     * @param httpRequestHeaders
+     *            the trace context is injected into the headers of the
+     *            http:request operations
+     */
+    public void setContextPropagation(boolean traceContextVariable, boolean httpRequestHeaders) {
+        this.traceContextVariable = traceContextVariable;
+        this.httpRequestPropagator = httpRequestHeaders ? new HttpRequestPropagator() : null;
+    }
+
+    /**
+     * @param deferredSpans
+     *            the INTERNAL processor spans, of the namespaces traced with
+     *            {@link GenericProcessorComponent}, are created in the SDK when
+     *            they end, not when they start
+     */
+    public void setDeferredSpans(boolean deferredSpans) {
+        this.deferredSpans = deferredSpans;
+    }
+
+    public boolean isTraceContextVariable() {
+        return traceContextVariable;
+    }
+
+    /**
+     * The processor spans are created by the interceptor instead of the
+     * notifications
+     */
+    public boolean isInterceptorEngine() {
+        return TracingEngine.INTERCEPTOR.equals(tracingEngine);
+    }
+
     private void init() {
         if (otelConnection == null) {
             otelConnection = connectionSupplier.get();
@@ -48,70 +135,262 @@ public class MuleNotificationProcessor {
     }
 
     public void handleProcessorStartEvent(MessageProcessorNotification notification) {
+        long nanoTime = System.nanoTime();
+        if (!controls.get().tracesProcessor(notification.getComponent().getIdentifier().getNamespace())) {
+            return;
+        }
         getProcessorComponent(notification).ifPresent(processor -> {
             log.debug("Processor: {}:{} start event", notification.getResourceIdentifier(),
                     notification.getComponent().getIdentifier());
             init();
             TraceMetadata traceMetadata = processor.getStartTraceComponent(notification);
+            // The wait attributes are set on the builder, those spans are not deferred
+            if (deferredSpans && schedulingDelay == null && SpanKind.INTERNAL.equals(traceMetadata.getSpanKind())) {
+                otelConnection.getTraceVault().startDeferredSpan(traceMetadata.getCorrelationId(),
+                        notification.getComponent().getLocation().getRootContainerName(),
+                        traceMetadata.getLocation(), new DeferredSpan(otelConnection::spanBuilder,
+                                traceMetadata.getSpanName(), traceMetadata.getSpanKind(), traceMetadata.getTags()),
+                        nanoTime, startResourceSample(traceMetadata.getLocation()));
+                recordHandler(nanoTime);
+                return;
+            }
             SpanBuilder spanBuilder = otelConnection.spanBuilder(traceMetadata.getSpanName())
-                    .setSpanKind(traceMetadata.getSpanKind())
-                    .setStartTimestamp(Instant.ofEpochMilli(notification.getTimestamp()));
+                    .setSpanKind(traceMetadata.getSpanKind());
             traceMetadata.getTags().forEach(spanBuilder::setAttribute);
-            otelConnection.getTraceVault().startSpan(traceMetadata.getCorrelationId(), traceMetadata.getLocation(),
-                    spanBuilder);
+            if (schedulingDelay != null) {
+                schedulingDelay.processorStart(otelConnection, traceMetadata.getCorrelationId(),
+                        notification.getComponent().getLocation().getRootContainerName(), spanBuilder, nanoTime);
+            }
+            otelConnection.getTraceVault().startSpan(traceMetadata.getCorrelationId(),
+                    notification.getComponent().getLocation().getRootContainerName(), traceMetadata.getLocation(),
+                    spanBuilder, nanoTime, startResourceSample(traceMetadata.getLocation()));
+            recordHandler(nanoTime);
         });
     }
 
     public void handleProcessorEndEvent(MessageProcessorNotification notification) {
-        getProcessorComponent(notification).ifPresent(processorComponent -> {
-            log.debug("Processor: {}:{}, end event ", notification.getResourceIdentifier(),
-                    notification.getComponent().getIdentifier());
+        long nanoTime = System.nanoTime();
+        TracingControls current = controls.get();
+        if (schedulingDelay != null && current.tracesTransactions()) {
+            // Every processor end, traced or not, is where the next processor starts
+            // waiting
             init();
-            TraceMetadata traceMetadata = processorComponent.getEndTraceComponent(notification);
-            otelConnection.getTraceVault().endSpan(traceMetadata.getCorrelationId(), traceMetadata.getLocation(),
-                    span -> {
-                        // Verify if an error happened
-                        if (notification.getEvent().getError().isPresent()) {
-                            log.debug("spanId: {}, log the error into the span", span.getSpanContext().getSpanId());
-                            Error error = notification.getEvent().getError().get();
-                            span.recordException(error.getCause());
-                        }
-
-                        setSpanStatus(traceMetadata, span);
-                        if (traceMetadata.getTags() != null)
-                            traceMetadata.getTags().forEach(span::setAttribute);
-                    }, Instant.ofEpochMilli(notification.getTimestamp()));
-        });
+            schedulingDelay.processorEnd(otelConnection.getTraceVault(), notification.getEvent().getCorrelationId(),
+                    nanoTime);
+        }
+        Optional<ProcessorComponent> processor = current
+                .tracesProcessor(notification.getComponent().getIdentifier().getNamespace())
+                        ? getProcessorComponent(notification)
+                        : Optional.empty();
+        if (!processor.isPresent()) {
+            endHeldSpan(notification, nanoTime);
+            return;
+        }
+        ProcessorComponent processorComponent = processor.get();
+        log.debug("Processor: {}:{}, end event ", notification.getResourceIdentifier(),
+                notification.getComponent().getIdentifier());
+        init();
+        TraceMetadata traceMetadata = processorComponent.getEndTraceComponent(notification);
+        otelConnection.getTraceVault().endSpan(traceMetadata.getCorrelationId(), traceMetadata.getLocation(),
+                span -> {
+                    // Verify if an error happened
+                    if (notification.getEvent().getError().isPresent()) {
+                        log.debug("spanId: {}, log the error into the span", span.getSpanContext().getSpanId());
+                        Error error = notification.getEvent().getError().get();
+                        exceptionRecorder.record(span, error.getCause(), error);
+                    }
+
+                    setSpanStatus(traceMetadata, span);
+                    if (traceMetadata.getTags() != null)
+                        traceMetadata.getTags().forEach(span::setAttribute);
+                }, nanoTime);
+        recordHandler(nanoTime);
+    }
+
+    // The span of a processor started before the controls changed is still ended,
+    // nothing is held before the connection exists
+    private void endHeldSpan(MessageProcessorNotification notification, long nanoTime) {
+        if (otelConnection == null) {
+            return;
+        }
+        otelConnection.getTraceVault().endSpan(notification.getEvent().getCorrelationId(),
+                notification.getComponent().getLocation().getLocation(), span -> notification.getEvent().getError()
+                        .ifPresent(error -> exceptionRecorder.record(span, error.getCause(), error)),
+                nanoTime);
+    }
+
+    /**
+     * Starts the span of an intercepted processor. The span is not kept by the
+     * trace vault, the interceptor holds it until the processor completes.
+     *
+     * @return the span, empty when the processor is not traced or its transaction
+     *         has no trace
+     */
+    public Optional<DetachedSpan> handleInterceptedStart(ComponentLocation location, Event event) {
+        long nanoTime = System.nanoTime();
+        if (!controls.get().tracesProcessor(location.getComponentIdentifier().getIdentifier().getNamespace())) {
+            return Optional.empty();
+        }
+        Optional<ProcessorComponent> processor = getProcessorComponent(
+                location.getComponentIdentifier().getIdentifier());
+        Optional<Component> component = getComponent(location);
+        if (!processor.isPresent() || !component.isPresent()) {
+            return Optional.empty();
+        }
+        log.debug("Processor: {} intercepted start", location.getLocation());
+        init();
+        TraceMetadata traceMetadata = processor.get().getStartTraceComponent(component.get(), event);
+        SpanBuilder spanBuilder = otelConnection.spanBuilder(traceMetadata.getSpanName())
+                .setSpanKind(traceMetadata.getSpanKind());
+        traceMetadata.getTags().forEach(spanBuilder::setAttribute);
+        if (schedulingDelay != null) {
+            schedulingDelay.processorStart(otelConnection, traceMetadata.getCorrelationId(),
+                    location.getRootContainerName(), spanBuilder, nanoTime);
+        }
+        Optional<DetachedSpan> span = otelConnection.getTraceVault().startDetachedSpan(
+                traceMetadata.getCorrelationId(), location.getRootContainerName(), location.getLocation(),
+                spanBuilder, nanoTime, startResourceSample(location.getLocation()));
+        recordHandler(nanoTime);
+        return span;
+    }
+
+    /**
+     * Ends the span of an intercepted processor
+     *
+     * @param event
+     *            event returned by the processor, or the event it received when
+     *            it failed
+     * @param throwable
+     *            failure of the processor, null when it completed
+     */
+    public void handleInterceptedEnd(DetachedSpan detachedSpan, ComponentLocation location, Event event,
+            Throwable throwable) {
+        long nanoTime = System.nanoTime();
+        try {
+            log.debug("Processor: {} intercepted end", location.getLocation());
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            // The failed event carries the Mule error
+            Event result = cause instanceof EventProcessingException
+                    ? ((EventProcessingException) cause).getEvent()
+                    : event;
+            Span span = detachedSpan.getSpan();
+            Optional<Error> error = result.getError();
+            if (error.isPresent()) {
+                exceptionRecorder.record(span, error.get().getCause(), error.get());
+            } else if (cause != null) {
+                exceptionRecorder.record(span, cause, null);
+            }
+            Optional<ProcessorComponent> processor = getProcessorComponent(
+                    location.getComponentIdentifier().getIdentifier());
+            Optional<Component> component = getComponent(location);
+            if (processor.isPresent() && component.isPresent()) {
+                TraceMetadata traceMetadata = processor.get().getEndTraceComponent(component.get(), result);
+                setSpanStatus(traceMetadata, span);
+                if (traceMetadata.getTags() != null)
+                    traceMetadata.getTags().forEach(span::setAttribute);
+            }
+        } finally {
+            detachedSpan.end(nanoTime);
+            if (schedulingDelay != null) {
+                schedulingDelay.processorEnd(otelConnection.getTraceVault(), event.getCorrelationId(), nanoTime);
+            }
+            recordHandler(nanoTime);
+        }
+    }
+
+    /**
+     * Injects the trace context into the headers of an http:request, nothing for
+     * the other processors
+     *
+     * @param span
+     *            span of the request started by the interceptor, null to use the
+     *            span kept by the trace vault
+     */
+    public void propagate(ComponentLocation location, Map<String, ProcessorParameterValue> parameters,
+            String correlationId, DetachedSpan span) {
+        if (httpRequestPropagator == null || !httpRequestPropagator.isHttpRequest(location)) {
+            return;
+        }
+        init();
+        Context context = span != null
+                ? Context.current().with(span.getSpan())
+                : otelConnection.getTraceVault().getContext(correlationId, location.getRootContainerName(),
+                        location.getLocation());
+        if (httpRequestPropagator.inject(otelConnection, context, location, parameters)) {
+            log.debug("Trace context injected into the headers of {}", location.getLocation());
+        }
+    }
+
+    private Optional<Component> getComponent(ComponentLocation location) {
+        return components.computeIfAbsent(location.getLocation(), key -> configurationComponentLocator
+                .find(Location.builderFromStringRepresentation(key).build()));
     }
 
     private Optional<ProcessorComponent> getProcessorComponent(MessageProcessorNotification notification) {
-        return processorComponentService.getProcessorComponentFor(notification.getComponent().getIdentifier(),
+        return getProcessorComponent(notification.getComponent().getIdentifier());
+    }
+
+    // The processors without a dedicated component get an INTERNAL span when their
+    // namespace is listed in the internal span namespaces
+    private Optional<ProcessorComponent> getProcessorComponent(ComponentIdentifier identifier) {
+        Optional<ProcessorComponent> processor = processorComponentService.getProcessorComponentFor(identifier,
                 configurationComponentLocator);
+        if (processor.isPresent() || !controls.get().tracesGenericProcessor(identifier.getNamespace())) {
+            return processor;
+        }
+        if (genericProcessorComponent == null) {
+            genericProcessorComponent = new GenericProcessorComponent()
+                    .withConfigurationComponentLocator(configurationComponentLocator);
+        }
+        return Optional.of(genericProcessorComponent);
     }
 
     @SuppressWarnings("OptionalGetWithoutIsPresent")
     public void handleFlowStartEvent(PipelineMessageNotification notification) {
+        long nanoTime = System.nanoTime();
+        TracingControls current = controls.get();
+        if (!current.tracesTransactions()) {
+            return;
+        }
         try {
             log.debug("Resource: {}, flow start", notification.getResourceIdentifier());
             init();
+            if (!current.tracesNestedFlows()
+                    && otelConnection.getTraceVault().hasTransaction(notification.getEvent().getCorrelationId())) {
+                return;
+            }
             ProcessorComponent flowProcessorComponent = new FlowProcessorComponent()
                     .withConfigurationComponentLocator(configurationComponentLocator);
             TraceMetadata traceMetadata = flowProcessorComponent
                     .getSourceStartTraceComponent(notification, otelConnection).get();
+            if (otelConnection.isServerIdInResource()) {
+                traceMetadata.getTags().remove(Constants.SERVER_ID);
+            }
             SpanBuilder spanBuilder = otelConnection.spanBuilder(traceMetadata.getSpanName())
-                    .setSpanKind(traceMetadata.getSpanKind()).setParent(traceMetadata.getContext())
-                    .setStartTimestamp(Instant.ofEpochMilli(notification.getTimestamp()));
+                    .setSpanKind(traceMetadata.getSpanKind()).setParent(traceMetadata.getContext());
             traceMetadata.getTags().forEach(spanBuilder::setAttribute);
+            if (schedulingDelay != null
+                    && !otelConnection.getTraceVault().hasTransaction(traceMetadata.getCorrelationId())) {
+                schedulingDelay.rootFlowStart(spanBuilder, notification.getEvent().getContext());
+            }
             otelConnection.getTraceVault().start(traceMetadata.getCorrelationId(), traceMetadata.getName(),
-                    spanBuilder);
+                    spanBuilder, nanoTime, startResourceSample(traceMetadata.getName()));
+            if (schedulingDelay != null) {
+                schedulingDelay.flowStart(otelConnection.getTraceVault(), traceMetadata.getCorrelationId(), nanoTime);
+            }
         } catch (Exception ex) {
             log.error("Error resource: " + notification.getResourceIdentifier() + " flow start", ex);
             throw ex;
+        } finally {
+            recordHandler(nanoTime);
         }
     }
 
     @SuppressWarnings("OptionalGetWithoutIsPresent")
     public void handleFlowEndEvent(PipelineMessageNotification notification) {
+        long nanoTime = System.nanoTime();
         try {
             log.debug("Resource: {}, flow end", notification.getResourceIdentifier());
             init();
@@ -126,12 +405,25 @@ public class MuleNotificationProcessor {
                 setSpanStatus(traceMetadata, rootSpan);
                 if (notification.getException() != null) {
                     log.debug("spanId: {}, log the error in the span", rootSpan.getSpanContext().getSpanId());
-                    rootSpan.recordException(notification.getException());
+                    exceptionRecorder.record(rootSpan, notification.getException(),
+                            notification.getEvent().getError().orElse(null));
                 }
-            }, Instant.ofEpochMilli(notification.getTimestamp()));
+            }, nanoTime);
         } catch (Exception ex) {
             log.error("Error resource: " + notification.getResourceIdentifier() + " flow end", ex);
             throw ex;
+        } finally {
+            recordHandler(nanoTime);
+        }
+    }
+
+    private ResourceSample startResourceSample(String location) {
+        return resourceUsage == null || location == null ? null : resourceUsage.start(location);
+    }
+
+    private void recordHandler(long startNanoTime) {
+        if (overheadGovernor != null) {
+            overheadGovernor.recordHandler(System.nanoTime() - startNanoTime);
         }
     }
 
@@ -1,8 +1,10 @@
 package com.mulesoft.ot.processor;
 
 import com.mulesoft.ot.tracevault.ContextPropagation;
+import org.mule.runtime.api.component.Component;
 import org.mule.runtime.api.component.ComponentIdentifier;
 import org.mule.runtime.api.component.location.ConfigurationComponentLocator;
+import org.mule.runtime.api.event.Event;
 import org.mule.runtime.api.notification.EnrichedServerNotification;
 
 import java.util.Optional;
@@ -33,6 +35,30 @@ public interface ProcessorComponent {
      */
     TraceMetadata getEndTraceComponent(EnrichedServerNotification notification);
 
+    /**
+     * Build a {@link TraceMetadata} for start of a message processor intercepted
+     * around its execution, without a server notification.
+     *
+     * @param component
+     *            intercepted {@link Component}
+     * @param event
+     *            {@link Event} received by the component
+     * @return {@link TraceMetadata}
+     */
+    TraceMetadata getStartTraceComponent(Component component, Event event);
+
+    /**
+     * Build a {@link TraceMetadata} for end of a message processor intercepted
+     * around its execution.
+     *
+     * @param component
+     *            intercepted {@link Component}
+     * @param event
+     *            {@link Event} returned by the component, or the failed event
+     * @return {@link TraceMetadata}
+     */
+    TraceMetadata getEndTraceComponent(Component component, Event event);
+
     /**
      * If a message processor has a source variation, then this implementation can
      * do more processing of a component.
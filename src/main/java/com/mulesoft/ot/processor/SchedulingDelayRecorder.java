@@ -0,0 +1,92 @@
+package com.mulesoft.ot.processor;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.tracevault.OtelConnection;
+import com.mulesoft.ot.tracevault.ThreadMark;
+import com.mulesoft.ot.tracevault.TraceVault;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import org.mule.runtime.api.event.EventContext;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time an event waits for a thread.
+ *
+ * <p>
+ * The root span gets the time between the source receiving the message and
+ * the flow start. Every processor span gets the time since the previous step
+ * of the transaction ended, the processor end or the flow start, with the
+ * threads on each side. When the wait is longer than the threshold a "wait"
+ * span covers it, so pool starvation shows up in the trace.
+ */
+public class SchedulingDelayRecorder {
+
+    private final long waitSpanThresholdNanos;
+
+    /**
+     * @param waitSpanThresholdMillis
+     *            waits of this length or more get a span of their own, 0 records
+     *            only the attributes
+     */
+    public SchedulingDelayRecorder(long waitSpanThresholdMillis) {
+        this.waitSpanThresholdNanos = waitSpanThresholdMillis > 0
+                ? TimeUnit.MILLISECONDS.toNanos(waitSpanThresholdMillis)
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Adds the source wait to the span of a root flow
+     */
+    public void rootFlowStart(SpanBuilder spanBuilder, EventContext eventContext) {
+        Instant received = eventContext.getReceivedTime();
+        if (received != null) {
+            spanBuilder.setAttribute(Constants.WAIT_SOURCE,
+                    Math.max(0, System.currentTimeMillis() - received.toEpochMilli()));
+        }
+        spanBuilder.setAttribute(Constants.THREAD_NAME, Thread.currentThread().getName());
+    }
+
+    /**
+     * Marks the start of a flow, the first processor waits from here
+     */
+    public void flowStart(TraceVault traceVault, String transactionId, long nanoTime) {
+        traceVault.mark(transactionId, nanoTime);
+    }
+
+    /**
+     * Adds the wait since the previous step to the span of a processor, and the
+     * wait span when it is long enough
+     */
+    public void processorStart(OtelConnection connection, String transactionId, String flowName,
+            SpanBuilder spanBuilder, long nanoTime) {
+        String thread = Thread.currentThread().getName();
+        spanBuilder.setAttribute(Constants.THREAD_NAME, thread);
+        Optional<ThreadMark> previous = connection.getTraceVault().getLastMark(transactionId);
+        if (!previous.isPresent()) {
+            return;
+        }
+        long wait = Math.max(0, nanoTime - previous.get().getNanoTime());
+        boolean hop = !thread.equals(previous.get().getThreadName());
+        spanBuilder.setAttribute(Constants.WAIT_PREVIOUS, wait);
+        spanBuilder.setAttribute(Constants.WAIT_PREVIOUS_THREAD, previous.get().getThreadName());
+        spanBuilder.setAttribute(Constants.WAIT_THREAD_HOP, hop);
+        if (wait >= waitSpanThresholdNanos) {
+            SpanBuilder waitSpan = connection.spanBuilder(Constants.WAIT_SPAN_NAME).setSpanKind(SpanKind.INTERNAL)
+                    .setAttribute(Constants.WAIT_PREVIOUS_THREAD, previous.get().getThreadName())
+                    .setAttribute(Constants.THREAD_NAME, thread).setAttribute(Constants.WAIT_THREAD_HOP, hop);
+            connection.getTraceVault()
+                    .startDetachedSpan(transactionId, flowName, null, waitSpan, previous.get().getNanoTime(), null)
+                    .ifPresent(span -> span.end(nanoTime));
+        }
+    }
+
+    /**
+     * Marks the end of a processor, traced or not
+     */
+    public void processorEnd(TraceVault traceVault, String transactionId, long nanoTime) {
+        traceVault.mark(transactionId, nanoTime);
+    }
+}
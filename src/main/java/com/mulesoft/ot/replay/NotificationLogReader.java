@@ -0,0 +1,107 @@
+package com.mulesoft.ot.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a file of the binary notification log written by the
+ * {@link NotificationRecorder}
+ */
+public class NotificationLogReader implements Closeable {
+
+    private final Path file;
+    private final DataInputStream input;
+    private final List<String> strings = new ArrayList<>();
+    private final long startEpochMillis;
+    private long previousNanoTime;
+
+    public NotificationLogReader(Path file) throws IOException {
+        this.file = file;
+        this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        try {
+            if (input.readInt() != NotificationLogWriter.MAGIC) {
+                throw new IOException("Not a notification log: " + file);
+            }
+            byte version = input.readByte();
+            if (version != NotificationLogWriter.VERSION) {
+                throw new IOException("Unsupported notification log version " + version + ": " + file);
+            }
+            this.startEpochMillis = input.readLong();
+            this.previousNanoTime = input.readLong();
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next record, null at the end of the file. A record truncated by
+     *         a stop of the application is the end of the file
+     */
+    public NotificationRecord next() throws IOException {
+        int action = input.read();
+        if (action < 0) {
+            return null;
+        }
+        try {
+            long zigzag = readVarLong();
+            long nanoTime = previousNanoTime + ((zigzag >>> 1) ^ -(zigzag & 1));
+            previousNanoTime = nanoTime;
+            return new NotificationRecord((byte) action, nanoTime, readString(), readString(), readString(),
+                    readString(), readString(), readString(), readString());
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private String readString() throws IOException {
+        int reference = (int) readVarLong();
+        switch (reference) {
+            case NotificationLogWriter.NULL_STRING :
+                return null;
+            case NotificationLogWriter.NEW_STRING :
+                String value = input.readUTF();
+                strings.add(value);
+                return value;
+            case NotificationLogWriter.LITERAL_STRING :
+                return input.readUTF();
+            default :
+                int index = reference - NotificationLogWriter.FIRST_INDEX;
+                if (index >= strings.size()) {
+                    throw new IOException("Invalid string reference " + reference + " in " + file);
+                }
+                return strings.get(index);
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint in " + file);
+    }
+
+    /**
+     * Wall clock of the creation of the file
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
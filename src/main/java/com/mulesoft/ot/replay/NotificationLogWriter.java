@@ -0,0 +1,103 @@
+package com.mulesoft.ot.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the binary notification log read by {@link NotificationLogReader}.
+ *
+ * <p>
+ * A file starts with the magic number, the version, the wall clock and the
+ * nanoTime of its creation. Every record is the action, the nanoTime as a
+ * zigzag varint delta from the previous record, and its strings. A string is
+ * written once per file, the next occurrences are a varint index in the string
+ * table of the file.
+ */
+final class NotificationLogWriter implements Closeable {
+
+    static final int MAGIC = 0x4D4E4C47;
+    static final byte VERSION = 1;
+
+    // String references: null, new string of the table, string out of the table,
+    // the indexes of the table start after them
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int LITERAL_STRING = 2;
+    static final int FIRST_INDEX = 3;
+    static final int MAX_STRINGS = 65_536;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private long previousNanoTime;
+
+    NotificationLogWriter(Path file) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        this.previousNanoTime = System.nanoTime();
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeLong(System.currentTimeMillis());
+        output.writeLong(previousNanoTime);
+    }
+
+    void write(NotificationRecord record) throws IOException {
+        output.writeByte(record.getAction());
+        long delta = record.getNanoTime() - previousNanoTime;
+        previousNanoTime = record.getNanoTime();
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        writeString(record.getCorrelationId());
+        writeString(record.getFlowName());
+        writeString(record.getLocation());
+        writeString(record.getNamespace());
+        writeString(record.getName());
+        writeString(record.getErrorType());
+        writeString(record.getThreadName());
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(NULL_STRING);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarLong(FIRST_INDEX + index);
+        } else if (strings.size() < MAX_STRINGS) {
+            strings.put(value, strings.size());
+            writeVarLong(NEW_STRING);
+            output.writeUTF(value);
+        } else {
+            writeVarLong(LITERAL_STRING);
+            output.writeUTF(value);
+        }
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * Bytes written to the file, including the ones still buffered
+     */
+    long size() {
+        return output.size();
+    }
+
+    void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
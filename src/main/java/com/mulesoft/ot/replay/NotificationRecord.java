@@ -0,0 +1,92 @@
+package com.mulesoft.ot.replay;
+
+/**
+ * Essentials of a flow or processor notification, as recorded by the
+ * {@link NotificationRecorder} and replayed by the {@link NotificationReplayer}
+ */
+public final class NotificationRecord {
+
+    public static final byte FLOW_START = 1;
+    public static final byte FLOW_END = 2;
+    public static final byte PROCESSOR_START = 3;
+    public static final byte PROCESSOR_END = 4;
+
+    private final byte action;
+    private final long nanoTime;
+    private final String correlationId;
+    private final String flowName;
+    private final String location;
+    private final String namespace;
+    private final String name;
+    private final String errorType;
+    private final String threadName;
+
+    /**
+     * @param action
+     *            one of FLOW_START, FLOW_END, PROCESSOR_START and PROCESSOR_END
+     * @param nanoTime
+     *            System.nanoTime() of the notification
+     * @param flowName
+     *            name of the flow, root container of the processors
+     * @param location
+     *            location of the processor, null for the flows
+     * @param errorType
+     *            namespace:identifier of the error of the event, null without
+     *            error
+     */
+    public NotificationRecord(byte action, long nanoTime, String correlationId, String flowName, String location,
+            String namespace, String name, String errorType, String threadName) {
+        this.action = action;
+        this.nanoTime = nanoTime;
+        this.correlationId = correlationId;
+        this.flowName = flowName;
+        this.location = location;
+        this.namespace = namespace;
+        this.name = name;
+        this.errorType = errorType;
+        this.threadName = threadName;
+    }
+
+    public byte getAction() {
+        return action;
+    }
+
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public String getFlowName() {
+        return flowName;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getErrorType() {
+        return errorType;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationRecord{action=" + action + ", nanoTime=" + nanoTime + ", correlationId=" + correlationId
+                + ", flowName=" + flowName + ", location=" + location + ", namespace=" + namespace + ", name=" + name
+                + ", errorType=" + errorType + ", threadName=" + threadName + "}";
+    }
+}
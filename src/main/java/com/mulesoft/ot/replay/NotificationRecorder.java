@@ -0,0 +1,233 @@
+package com.mulesoft.ot.replay;
+
+import org.mule.runtime.api.component.Component;
+import org.mule.runtime.api.event.Event;
+import org.mule.runtime.api.message.Error;
+import org.mule.runtime.api.notification.MessageProcessorNotification;
+import org.mule.runtime.api.notification.PipelineMessageNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records the flow and processor notifications in a rolling binary log, to be
+ * replayed outside Mule by the {@link NotificationReplayer}.
+ *
+ * <p>
+ * The listeners only queue the records, a daemon thread writes them. The
+ * records that do not fit in the queue are dropped. The files are the path
+ * configured followed by a sequence number, a new file starts when the current
+ * one reaches the maximum size and only the last files are kept.
+ */
+public class NotificationRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRecorder.class);
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final long FLUSH_MILLIS = 1000;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final BlockingQueue<NotificationRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running;
+    private Thread writer;
+    private long sequence;
+
+    /**
+     * @param file
+     *            path of the log, the files get a sequence number as suffix
+     * @param maxFileBytes
+     *            size from which a new file starts
+     * @param maxFiles
+     *            number of files kept, the oldest ones are deleted
+     */
+    public NotificationRecorder(Path file, long maxFileBytes, int maxFiles) {
+        this.file = file.toAbsolutePath();
+        this.maxFileBytes = Math.max(1024, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::work, "otel-notification-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        log.debug("Recording the notifications in {}", file);
+    }
+
+    public synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        log.debug("Notification recording stopped, recorded: {}, dropped: {}", recorded.sum(), dropped.sum());
+    }
+
+    public void recordFlow(PipelineMessageNotification notification) {
+        byte action;
+        switch (Integer.parseInt(notification.getAction().getIdentifier())) {
+            case PipelineMessageNotification.PROCESS_START :
+                action = NotificationRecord.FLOW_START;
+                break;
+            case PipelineMessageNotification.PROCESS_COMPLETE :
+                action = NotificationRecord.FLOW_END;
+                break;
+            default :
+                return;
+        }
+        Event event = notification.getEvent();
+        String errorType = errorType(event);
+        if (errorType == null && notification.getException() != null) {
+            errorType = notification.getException().getClass().getName();
+        }
+        record(new NotificationRecord(action, System.nanoTime(), event.getCorrelationId(),
+                notification.getResourceIdentifier(), null, null, null, errorType, Thread.currentThread().getName()));
+    }
+
+    public void recordProcessor(MessageProcessorNotification notification) {
+        byte action;
+        switch (Integer.parseInt(notification.getAction().getIdentifier())) {
+            case MessageProcessorNotification.MESSAGE_PROCESSOR_PRE_INVOKE :
+                action = NotificationRecord.PROCESSOR_START;
+                break;
+            case MessageProcessorNotification.MESSAGE_PROCESSOR_POST_INVOKE :
+                action = NotificationRecord.PROCESSOR_END;
+                break;
+            default :
+                return;
+        }
+        Component component = notification.getComponent();
+        Event event = notification.getEvent();
+        record(new NotificationRecord(action, System.nanoTime(), event.getCorrelationId(),
+                component.getLocation().getRootContainerName(), component.getLocation().getLocation(),
+                component.getIdentifier().getNamespace(), component.getIdentifier().getName(), errorType(event),
+                Thread.currentThread().getName()));
+    }
+
+    void record(NotificationRecord record) {
+        if (running && queue.offer(record)) {
+            recorded.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private static String errorType(Event event) {
+        if (event == null || !event.getError().isPresent()) {
+            return null;
+        }
+        Error error = event.getError().get();
+        return error.getErrorType() != null
+                ? error.getErrorType().getNamespace() + ":" + error.getErrorType().getIdentifier()
+                : error.getCause().getClass().getName();
+    }
+
+    private void work() {
+        NotificationLogWriter current = null;
+        try {
+            sequence = lastSequence();
+            while (running || !queue.isEmpty()) {
+                NotificationRecord record = queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (record == null) {
+                    if (current != null) {
+                        current.flush();
+                    }
+                    continue;
+                }
+                if (current == null || current.size() >= maxFileBytes) {
+                    current = roll(current);
+                }
+                current.write(record);
+            }
+        } catch (IOException e) {
+            log.warn("Notification recording in {} stopped: {}", file, e.getMessage());
+            running = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(current);
+            queue.clear();
+        }
+    }
+
+    private NotificationLogWriter roll(NotificationLogWriter current) throws IOException {
+        close(current);
+        sequence++;
+        NotificationLogWriter next = new NotificationLogWriter(
+                file.resolveSibling(file.getFileName() + "." + String.format("%06d", sequence)));
+        List<Path> files = listFiles(file);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+        return next;
+    }
+
+    private long lastSequence() throws IOException {
+        List<Path> files = listFiles(file);
+        if (files.isEmpty()) {
+            return 0;
+        }
+        String name = files.get(files.size() - 1).getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static void close(NotificationLogWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Notification log could not be closed", e);
+        }
+    }
+
+    /**
+     * Files of the log of path, oldest first
+     */
+    public static List<Path> listFiles(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path directory = absolute.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        String prefix = absolute.getFileName() + ".";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(candidate -> {
+                String name = candidate.getFileName().toString();
+                return name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,124 @@
+package com.mulesoft.ot.replay;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.tracevault.TraceVault;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Replays a notification log recorded by the {@link NotificationRecorder}, at
+ * the original pace, accelerated, or as fast as possible.
+ *
+ * <p>
+ * The replay runs in one thread, the pauses of the recording longer than
+ * MAX_GAP_SECONDS, like the restarts of the application between two files, are
+ * shortened to it.
+ */
+public class NotificationReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationReplayer.class);
+    private static final long MAX_GAP_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Consumer<NotificationRecord> target;
+    private final double speed;
+
+    /**
+     * @param target
+     *            receives the records
+     * @param speed
+     *            1 replays at the recorded pace, 10 ten times faster, 0 or less
+     *            without waiting
+     */
+    public NotificationReplayer(Consumer<NotificationRecord> target, double speed) {
+        this.target = target;
+        this.speed = speed;
+    }
+
+    /**
+     * @param files
+     *            files of the log, oldest first
+     * @return number of records replayed
+     */
+    public long replay(List<Path> files) throws IOException {
+        long count = 0;
+        long replayStart = System.nanoTime();
+        long recordedElapsed = 0;
+        Long previousNanoTime = null;
+        for (Path file : files) {
+            try (NotificationLogReader reader = new NotificationLogReader(file)) {
+                NotificationRecord record;
+                while ((record = reader.next()) != null) {
+                    if (previousNanoTime != null) {
+                        recordedElapsed += Math.min(MAX_GAP_NANOS,
+                                Math.max(0, record.getNanoTime() - previousNanoTime));
+                    }
+                    previousNanoTime = record.getNanoTime();
+                    pace(replayStart, recordedElapsed);
+                    target.accept(record);
+                    count++;
+                }
+            }
+            log.debug("Replayed {}, records: {}", file, count);
+        }
+        return count;
+    }
+
+    private void pace(long replayStart, long recordedElapsed) {
+        if (speed <= 0) {
+            return;
+        }
+        long wait = replayStart + (long) (recordedElapsed / speed) - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Replays a log into the trace vault with an SDK configured by the otel.*
+     * system properties and environment variables.
+     *
+     * <p>
+     * Arguments: speed, then the files of the log or the path configured in the
+     * recorder
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: NotificationReplayer <speed> <log path or files>...");
+            System.exit(1);
+        }
+        double speed = Double.parseDouble(args[0]);
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isRegularFile(path)) {
+                files.add(path);
+            } else {
+                files.addAll(NotificationRecorder.listFiles(path));
+            }
+        }
+
+        OpenTelemetrySdk sdk = AutoConfiguredOpenTelemetrySdk.builder().build().getOpenTelemetrySdk();
+        Tracer tracer = sdk.getTracer(Constants.LIBRARY_NAME, Constants.LIBRARY_VERSION);
+        TraceVault traceVault = TraceVault.getInstance();
+        long start = System.nanoTime();
+        long count = new NotificationReplayer(new TraceVaultReplayTarget(traceVault, tracer::spanBuilder), speed)
+                .replay(files);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.printf("Records: %d, files: %d, milliseconds: %d, transactions left open: %d%n", count,
+                files.size(), elapsedMillis, traceVault.getTransactionCount());
+        sdk.getSdkTracerProvider().shutdown().join(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,70 @@
+package com.mulesoft.ot.replay;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.tracevault.TraceVault;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies the replayed notifications to a {@link TraceVault} the way the
+ * notification handlers do: the flows start and end the transactions, the
+ * processors start and end the spans of their location.
+ */
+public class TraceVaultReplayTarget implements Consumer<NotificationRecord> {
+
+    private final TraceVault traceVault;
+    private final Function<String, SpanBuilder> spanBuilder;
+
+    /**
+     * @param spanBuilder
+     *            creates the span builders from the span names, usually the
+     *            tracer of the SDK under test
+     */
+    public TraceVaultReplayTarget(TraceVault traceVault, Function<String, SpanBuilder> spanBuilder) {
+        this.traceVault = traceVault;
+        this.spanBuilder = spanBuilder;
+    }
+
+    @Override
+    public void accept(NotificationRecord record) {
+        long nanoTime = System.nanoTime();
+        switch (record.getAction()) {
+            case NotificationRecord.FLOW_START :
+                traceVault.start(record.getCorrelationId(), record.getFlowName(),
+                        spanBuilder.apply(record.getFlowName()).setSpanKind(SpanKind.SERVER)
+                                .setAttribute(Constants.SERVICE_FLOW_NAME, record.getFlowName())
+                                .setAttribute(Constants.CORRELATION_ID, record.getCorrelationId()),
+                        nanoTime, null);
+                break;
+            case NotificationRecord.FLOW_END :
+                traceVault.end(record.getCorrelationId(), record.getFlowName(), span -> setStatus(span, record),
+                        nanoTime);
+                break;
+            case NotificationRecord.PROCESSOR_START :
+                traceVault.startSpan(record.getCorrelationId(), record.getFlowName(), record.getLocation(),
+                        spanBuilder.apply(record.getNamespace() + ":" + record.getName())
+                                .setSpanKind(SpanKind.INTERNAL)
+                                .setAttribute(Constants.SERVICE_PROCESSOR_NAMESPACE, record.getNamespace())
+                                .setAttribute(Constants.SERVICE_PROCESSOR_NAME, record.getName()),
+                        nanoTime, null);
+                break;
+            case NotificationRecord.PROCESSOR_END :
+                traceVault.endSpan(record.getCorrelationId(), record.getLocation(), span -> setStatus(span, record),
+                        nanoTime);
+                break;
+            default :
+                break;
+        }
+    }
+
+    private static void setStatus(Span span, NotificationRecord record) {
+        if (record.getErrorType() != null) {
+            span.setStatus(StatusCode.ERROR, record.getErrorType());
+        }
+    }
+}
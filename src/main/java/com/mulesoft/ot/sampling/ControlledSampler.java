@@ -0,0 +1,99 @@
+package com.mulesoft.ot.sampling;
+
+import com.mulesoft.ot.control.DegradeLevel;
+import com.mulesoft.ot.control.TracingControls;
+import com.mulesoft.ot.control.TracingControlsManager;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+/**
+ * Sampler that follows the {@link TracingControls} of every span: drops the
+ * spans when tracing is disabled or off, samples a fixed ratio of the traces
+ * in the degrade level SAMPLED_ROOT_ONLY, also the ones with a sampled remote
+ * parent, uses the adaptive sampler when it
+ * has a budget of traces per second and the sampler configured in the SDK
+ * otherwise.
+ */
+public class ControlledSampler implements Sampler {
+
+    // Ratio of the traces sampled in the degrade level SAMPLED_ROOT_ONLY
+    private static final double DEGRADED_RATIO = 0.1;
+
+    private final TracingControlsManager controls;
+    private final Sampler configured;
+    private final Sampler adaptive;
+    private final Sampler degraded;
+
+    /**
+     * @param recordUnsampled
+     *            the root spans not sampled in the degrade level SAMPLED_ROOT_ONLY
+     *            are recorded, but not exported, so the span processors still see
+     *            them
+     */
+    public ControlledSampler(TracingControlsManager controls, Sampler configured, Sampler adaptive,
+            boolean recordUnsampled) {
+        this.controls = controls;
+        this.configured = configured;
+        this.adaptive = adaptive;
+        // The ratio also applies to the traces sampled upstream, otherwise the
+        // degrade level gives no relief to a downstream service
+        Sampler root = new DegradedRootSampler(recordUnsampled);
+        this.degraded = Sampler.parentBasedBuilder(root).setRemoteParentSampled(root).build();
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+            Attributes attributes, List<LinkData> parentLinks) {
+        TracingControls current = controls.get();
+        if (!current.tracesTransactions()) {
+            return SamplingResult.drop();
+        }
+        Sampler sampler;
+        if (current.getDegradeLevel() == DegradeLevel.SAMPLED_ROOT_ONLY) {
+            sampler = degraded;
+        } else {
+            sampler = current.getSamplingTracesPerSecond() > 0 ? adaptive : configured;
+        }
+        return sampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
+
+    @Override
+    public String getDescription() {
+        return "ControlledSampler{configured=" + configured.getDescription() + ", adaptive="
+                + adaptive.getDescription() + "}";
+    }
+
+    /**
+     * Samples the ratio of the degrade level, the traces not sampled are recorded
+     * only when recordUnsampled
+     */
+    private static final class DegradedRootSampler implements Sampler {
+        private final Sampler ratio = Sampler.traceIdRatioBased(DEGRADED_RATIO);
+        private final SamplingResult notSampled;
+
+        private DegradedRootSampler(boolean recordUnsampled) {
+            this.notSampled = SamplingResult
+                    .create(recordUnsampled ? SamplingDecision.RECORD_ONLY : SamplingDecision.DROP);
+        }
+
+        @Override
+        public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                Attributes attributes, List<LinkData> parentLinks) {
+            SamplingResult result = ratio.shouldSample(parentContext, traceId, name, spanKind, attributes,
+                    parentLinks);
+            return result.getDecision() == SamplingDecision.DROP ? notSampled : result;
+        }
+
+        @Override
+        public String getDescription() {
+            return "DegradedRootSampler{ratio=" + DEGRADED_RATIO + "}";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.mulesoft.ot.sampling;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.api.SamplingBudgetScope;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Root sampler that targets a number of traces per second, for the node or for
+ * every flow.
+ *
+ * <p>
+ * The arrival rate of the root spans is estimated with an EWMA updated every
+ * second, the sampling probability is the budget divided by the rate. Every
+ * flow keeps a minimum probability that guarantees minTracesPerFlow traces per
+ * second, so low traffic flows stay visible. The probability used is recorded
+ * in the attribute sampling.probability of the root span, the backend can
+ * extrapolate the counts with 1/probability.
+ *
+ * <p>
+ * Must be used as the root sampler of a parent based sampler.
+ */
+public class ThroughputBudgetSampler implements Sampler {
+
+    private static final AttributeKey<String> FLOW_NAME = AttributeKey.stringKey(Constants.SERVICE_FLOW_NAME);
+    private static final AttributeKey<Double> SAMPLING_PROBABILITY = AttributeKey
+            .doubleKey(Constants.SAMPLING_PROBABILITY);
+
+    // Upper limit of flows with an estimator, the remaining flows share one
+    private static final int MAX_FLOWS = 1000;
+    private static final String OTHER_FLOWS = "";
+
+    private final DoubleSupplier tracesPerSecond;
+    private final double minTracesPerFlow;
+    private final SamplingBudgetScope scope;
+    private final SamplingResult notSampled;
+    private final LongSupplier nanoClock;
+    private final RateEstimator node;
+    private final ConcurrentHashMap<String, RateEstimator> flows = new ConcurrentHashMap<>();
+
+    /**
+     * @param tracesPerSecond
+     *            traces per second targeted for the node or for every flow, read
+     *            for every root span so it can change at runtime
+     * @param minTracesPerFlow
+     *            traces per second guaranteed for every flow
+     * @param scope
+     *            scope of the budget
+     * @param recordUnsampled
+     *            the root spans not sampled are recorded, but not exported, so
+     *            the span processors still see them
+     */
+    public ThroughputBudgetSampler(DoubleSupplier tracesPerSecond, double minTracesPerFlow, SamplingBudgetScope scope,
+            boolean recordUnsampled) {
+        this(tracesPerSecond, minTracesPerFlow, scope, recordUnsampled, System::nanoTime);
+    }
+
+    ThroughputBudgetSampler(DoubleSupplier tracesPerSecond, double minTracesPerFlow, SamplingBudgetScope scope,
+            boolean recordUnsampled, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.node = new RateEstimator(nanoClock.getAsLong());
+        this.tracesPerSecond = tracesPerSecond;
+        this.minTracesPerFlow = Math.max(0, minTracesPerFlow);
+        this.scope = scope;
+        this.notSampled = SamplingResult
+                .create(recordUnsampled ? SamplingDecision.RECORD_ONLY : SamplingDecision.DROP);
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+            Attributes attributes, List<LinkData> parentLinks) {
+        long now = nanoClock.getAsLong();
+        String flowName = attributes.get(FLOW_NAME);
+        RateEstimator flow = getFlow(flowName != null ? flowName : name);
+        double flowRate = flow.arrive(now);
+        double nodeRate = node.arrive(now);
+
+        double probability = probability(SamplingBudgetScope.FLOW.equals(scope) ? flowRate : nodeRate,
+                tracesPerSecond.getAsDouble());
+        probability = Math.max(probability, probability(flowRate, minTracesPerFlow));
+
+        if (probability >= 1.0 || ThreadLocalRandom.current().nextDouble() < probability) {
+            return SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE,
+                    Attributes.of(SAMPLING_PROBABILITY, Math.min(1.0, probability)));
+        }
+        return notSampled;
+    }
+
+    @Override
+    public String getDescription() {
+        return "ThroughputBudgetSampler{tracesPerSecond=" + tracesPerSecond.getAsDouble() + ", minTracesPerFlow="
+                + minTracesPerFlow + ", scope=" + scope + "}";
+    }
+
+    private RateEstimator getFlow(String flowName) {
+        RateEstimator estimator = flows.get(flowName);
+        if (estimator != null) {
+            return estimator;
+        }
+        return flows.computeIfAbsent(flows.size() >= MAX_FLOWS ? OTHER_FLOWS : flowName,
+                key -> new RateEstimator(nanoClock.getAsLong()));
+    }
+
+    private static double probability(double rate, double budget) {
+        if (rate <= 0) {
+            return 1.0;
+        }
+        return Math.min(1.0, budget / rate);
+    }
+
+    /**
+     * Arrivals per second, exponentially weighted over the last windows
+     */
+    private static final class RateEstimator {
+        private static final long WINDOW_NANOS = 1_000_000_000L;
+        private static final double ALPHA = 0.3;
+
+        private final LongAdder arrivals = new LongAdder();
+        private final AtomicLong windowStart;
+        private volatile double rate;
+
+        RateEstimator(long now) {
+            windowStart = new AtomicLong(now);
+        }
+
+        double arrive(long now) {
+            arrivals.increment();
+            long start = windowStart.get();
+            long elapsed = now - start;
+            if (elapsed >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+                double current = arrivals.sumThenReset() * (double) WINDOW_NANOS / elapsed;
+                rate = rate == 0 ? current : ALPHA * current + (1 - ALPHA) * rate;
+            }
+            return rate;
+        }
+    }
+}
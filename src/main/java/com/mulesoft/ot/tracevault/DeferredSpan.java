@@ -0,0 +1,55 @@
+package com.mulesoft.ot.tracevault;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Processor span not created yet. Only the name, the kind and the start
+ * attributes are kept while the processor runs, the SDK span is created when
+ * it ends, and its attributes are only set when the sampler records it.
+ */
+public final class DeferredSpan {
+
+    private final Function<String, SpanBuilder> spanBuilders;
+    private final String name;
+    private final SpanKind kind;
+    private final Attributes attributes;
+
+    /**
+     * @param spanBuilders
+     *            creates the builder of the span when it is materialized
+     */
+    public DeferredSpan(Function<String, SpanBuilder> spanBuilders, String name, SpanKind kind,
+            Map<String, String> tags) {
+        this.spanBuilders = spanBuilders;
+        this.name = name;
+        this.kind = kind;
+        AttributesBuilder builder = Attributes.builder();
+        tags.forEach((key, value) -> {
+            if (value != null) {
+                builder.put(key, value);
+            }
+        });
+        this.attributes = builder.build();
+    }
+
+    /**
+     * Creates the SDK span, child of parent, started at start
+     */
+    Span materialize(Span parent, Instant start) {
+        Span span = spanBuilders.apply(name).setSpanKind(kind).setParent(Context.current().with(parent))
+                .setStartTimestamp(start).startSpan();
+        if (span.isRecording()) {
+            span.setAllAttributes(attributes);
+        }
+        return span;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mulesoft.ot.tracevault;
+
+import com.mulesoft.ot.metrics.ResourceSample;
+import io.opentelemetry.api.trace.Span;
+
+/**
+ * Span of a trace that is not kept by the {@link TraceVault}. The caller holds
+ * it until the end, with the clock of its trace.
+ */
+public final class DetachedSpan {
+
+    private final Span span;
+    private final TraceClock clock;
+    private final ResourceSample resourceSample;
+    private final Runnable release;
+
+    /**
+     * @param release
+     *            removes the span from the open spans of its trace
+     */
+    DetachedSpan(Span span, TraceClock clock, ResourceSample resourceSample, Runnable release) {
+        this.span = span;
+        this.clock = clock;
+        this.resourceSample = resourceSample;
+        this.release = release;
+    }
+
+    public Span getSpan() {
+        return span;
+    }
+
+    /**
+     * @param nanoTime
+     *            System.nanoTime() of the end
+     */
+    public void end(long nanoTime) {
+        release.run();
+        if (resourceSample != null) {
+            resourceSample.end(span);
+        }
+        span.end(clock.toInstant(nanoTime));
+    }
+}
@@ -1,23 +1,51 @@
 package com.mulesoft.ot.tracevault;
 
+import com.mulesoft.ot.ConnectorConfiguration;
 import com.mulesoft.ot.Constants;
-import io.opentelemetry.api.OpenTelemetry;
+import com.mulesoft.ot.control.TracingControlsManager;
+import com.mulesoft.ot.export.ExportDestination;
+import com.mulesoft.ot.export.ExportQueue;
+import com.mulesoft.ot.export.PrioritySpanProcessor;
+import com.mulesoft.ot.export.ShardedSpanProcessor;
+import com.mulesoft.ot.export.SharedPipelineSpanProcessor;
+import com.mulesoft.ot.export.ShortSpanFilter;
+import com.mulesoft.ot.export.SpanExporterFactory;
+import com.mulesoft.ot.metrics.RedMetricsSpanProcessor;
+import com.mulesoft.ot.sampling.ControlledSampler;
+import com.mulesoft.ot.sampling.ThroughputBudgetSampler;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.context.propagation.TextMapGetter;
 import io.opentelemetry.context.propagation.TextMapSetter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.semconv.resource.attributes.ResourceAttributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Creates the connection for the OpenTelemetry connector
@@ -32,20 +60,51 @@ import java.util.Optional;
  */
 public class OtelConnection implements ContextPropagation {
 
-    private final Logger log = LoggerFactory.getLogger(OtelConnection.class);
+    private static final Logger log = LoggerFactory.getLogger(OtelConnection.class);
+    // The export workers join for up to 30 seconds each, the stop of the
+    // application does not wait longer than this
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
     private final TraceVault traceVault;
     private static OtelConnection otelConnection;
-    private final OpenTelemetry openTelemetry;
+    private final OpenTelemetrySdk openTelemetry;
     private final Tracer tracer;
+    private ExportQueue exportQueue;
+    private final boolean serverIdInResource;
+    private final ShortSpanFilter shortSpanFilter;
+    private final List<PrioritySpanProcessor> destinationQueues = new ArrayList<>();
 
     /*
      * Set the configuration for the Open Telemetry library
      */
-    private OtelConnection(String serviceName, String additionalTags, String collectorEndpoint) {
+    private OtelConnection(ConnectorConfiguration connectorConfiguration) {
         final Map<String, String> configuration = new HashMap<>();
+        String serviceName = connectorConfiguration.getServiceName();
+        String additionalTags = connectorConfiguration.getAdditionalTags();
+        String collectorEndpoint = connectorConfiguration.getCollectorEndpoint();
 
-        configuration.put(Constants.OTEL_METRICS_EXPORTER, Constants.NONE);
-        configuration.put(Constants.OTEL_TRACES_EXPORTER, Constants.OTLP);
+        if (connectorConfiguration.isRedMetrics()) {
+            configuration.put(Constants.OTEL_METRICS_EXPORTER, Constants.OTLP);
+            configuration.put(Constants.OTEL_METRICS_EXEMPLAR_FILTER, Constants.WITH_SAMPLED_TRACE);
+        } else if (connectorConfiguration.isPriorityExportQueue()
+                || connectorConfiguration.isSharedExportPipeline()
+                || !connectorConfiguration.getExportDestinations().isEmpty()
+                || connectorConfiguration.getOverheadGovernor().isPresent()) {
+            // Metrics of the export queues and of the overhead governor
+            configuration.put(Constants.OTEL_METRICS_EXPORTER, Constants.OTLP);
+        } else {
+            configuration.put(Constants.OTEL_METRICS_EXPORTER, Constants.NONE);
+        }
+        // The filter of the short spans sits in front of the export processors, only
+        // the spans kept reach their queues
+        ShortSpanFilter filter = connectorConfiguration.getShortSpanThresholds() != null
+                ? new ShortSpanFilter(connectorConfiguration.getShortSpanThresholds())
+                : null;
+        shortSpanFilter = filter != null && !filter.isEmpty() ? filter : null;
+        // The priority export queue, the shared pipeline and the filter replace the
+        // exporter configured by the SDK
+        configuration.put(Constants.OTEL_TRACES_EXPORTER,
+                connectorConfiguration.isPriorityExportQueue() || connectorConfiguration.isSharedExportPipeline()
+                        || shortSpanFilter != null ? Constants.NONE : Constants.OTLP);
         if (serviceName != null && !serviceName.trim().isEmpty()) {
             configuration.put(Constants.OTEL_SERVICE_NAME, serviceName);
         }
@@ -59,24 +118,168 @@ public class OtelConnection implements ContextPropagation {
                 .addPropertiesSupplier(() -> Collections.unmodifiableMap(configuration));
         log.debug("Open Telemetry connector configuration: {}", configuration);
 
+        // The server id is the same for every span, it is sent once per batch in the
+        // resource
+        String serverId = connectorConfiguration.getServerId();
+        serverIdInResource = connectorConfiguration.isConstantAttributesInResource() && serverId != null;
+        if (serverIdInResource) {
+            builder.addResourceCustomizer((resource, config) -> resource
+                    .merge(Resource.create(Attributes.of(AttributeKey.stringKey(Constants.SERVER_ID), serverId))));
+        }
+
+        if (shortSpanFilter != null) {
+            builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> {
+                // Batch processor of the OTLP exporter the SDK would have configured
+                if (!connectorConfiguration.isPriorityExportQueue()
+                        && !connectorConfiguration.isSharedExportPipeline()) {
+                    shortSpanFilter.forwardTo(SpanExporterFactory.batch(SpanExporterFactory.otlp(config), config));
+                }
+                return tracerProviderBuilder.addSpanProcessor(shortSpanFilter);
+            });
+        }
+
+        RedMetricsSpanProcessor redMetrics = connectorConfiguration.isRedMetrics()
+                ? new RedMetricsSpanProcessor()
+                : null;
+        if (redMetrics != null) {
+            builder.addTracerProviderCustomizer(
+                    (tracerProviderBuilder, config) -> tracerProviderBuilder.addSpanProcessor(redMetrics));
+        }
+
+        // The flight recorder keeps the spans before any exporter, so they are available
+        // when the collector is unreachable
+        connectorConfiguration.getFlightRecorder().ifPresent(flightRecorder -> builder.addTracerProviderCustomizer(
+                (tracerProviderBuilder, config) -> tracerProviderBuilder.addSpanProcessor(flightRecorder)));
+
+        if (connectorConfiguration.isSharedExportPipeline()) {
+            // One export thread and connection for the applications of the worker, every
+            // application keeps its resource and its own queue. The application is named
+            // after the service.name of its resource, which the SDK always sets
+            AtomicReference<String> resourceServiceName = new AtomicReference<>();
+            builder.addResourceCustomizer((resource, config) -> {
+                resourceServiceName.set(resource.getAttribute(ResourceAttributes.SERVICE_NAME));
+                return resource;
+            });
+            builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> {
+                SharedPipelineSpanProcessor shared = SpanExporterFactory.sharedPipeline(config,
+                        resourceServiceName.get() != null ? resourceServiceName.get() : Constants.LIBRARY_NAME,
+                        connectorConfiguration.getExportQueueSize());
+                exportQueue = shared;
+                return addExportProcessor(tracerProviderBuilder, shared);
+            });
+        } else if (connectorConfiguration.isPriorityExportQueue()) {
+            builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> {
+                // Every shard exports through its own worker and connection
+                if (connectorConfiguration.getExportShards() > 1) {
+                    ShardedSpanProcessor sharded = new ShardedSpanProcessor(Constants.OTLP,
+                            () -> primaryExporter(connectorConfiguration, config),
+                            connectorConfiguration.getExportShards(),
+                            connectorConfiguration.getExportQueueSize(),
+                            connectorConfiguration.getExportReservedPercentage(),
+                            connectorConfiguration.getSlowSpanThreshold());
+                    exportQueue = sharded;
+                    return addExportProcessor(tracerProviderBuilder, sharded);
+                }
+                PrioritySpanProcessor queue = new PrioritySpanProcessor(Constants.OTLP,
+                        primaryExporter(connectorConfiguration, config), connectorConfiguration.getExportQueueSize(),
+                        connectorConfiguration.getExportReservedPercentage(),
+                        connectorConfiguration.getSlowSpanThreshold());
+                exportQueue = queue;
+                return addExportProcessor(tracerProviderBuilder, queue);
+            });
+        }
+
+        // Every additional destination has its own queue and worker, a slow or down
+        // destination only drops its own spans
+        if (!connectorConfiguration.getExportDestinations().isEmpty()) {
+            builder.addTracerProviderCustomizer((tracerProviderBuilder, config) -> {
+                for (ExportDestination destination : connectorConfiguration.getExportDestinations()) {
+                    log.debug("Export destination: {}", destination);
+                    PrioritySpanProcessor queue = new PrioritySpanProcessor(destination.getName(),
+                            SpanExporterFactory.create(destination, config), destination.getQueueSize(),
+                            destination.getReservedPercentage(), connectorConfiguration.getSlowSpanThreshold());
+                    destinationQueues.add(queue);
+                    addExportProcessor(tracerProviderBuilder, queue);
+                }
+                return tracerProviderBuilder;
+            });
+        }
+
+        // The budget of the adaptive sampler is a tracing control, it can be enabled
+        // at runtime. Root spans not sampled are still recorded for the RED metrics
+        TracingControlsManager controls = TracingControlsManager.getInstance();
+        Sampler adaptive = Sampler.parentBased(new ThroughputBudgetSampler(
+                () -> controls.get().getSamplingTracesPerSecond(),
+                connectorConfiguration.getSamplingMinTracesPerFlow(),
+                connectorConfiguration.getSamplingBudgetScope(), redMetrics != null));
+        builder.addSamplerCustomizer(
+                (configured, config) -> new ControlledSampler(controls, configured, adaptive, redMetrics != null));
+
         builder.setServiceClassLoader(AutoConfiguredOpenTelemetrySdkBuilder.class.getClassLoader());
         openTelemetry = builder.build().getOpenTelemetrySdk();
         tracer = openTelemetry.getTracer(Constants.LIBRARY_NAME, Constants.LIBRARY_VERSION);
+        Meter meter = openTelemetry.getMeter(Constants.LIBRARY_NAME);
+        if (redMetrics != null) {
+            redMetrics.register(meter);
+        }
+        if (exportQueue != null) {
+            exportQueue.register(meter);
+        }
+        destinationQueues.forEach(queue -> queue.register(meter));
+        connectorConfiguration.getOverheadGovernor().ifPresent(governor -> {
+            governor.setExportQueue(exportQueue);
+            governor.register(meter);
+        });
         traceVault = TraceVault.getInstance();
+        traceVault.setOpenSpanLimits(connectorConfiguration.getMaxOpenSpans(),
+                connectorConfiguration.getOpenSpanTimeout());
+    }
+
+    private SdkTracerProviderBuilder addExportProcessor(SdkTracerProviderBuilder tracerProviderBuilder,
+            SpanProcessor spanProcessor) {
+        if (shortSpanFilter != null) {
+            shortSpanFilter.forwardTo(spanProcessor);
+            return tracerProviderBuilder;
+        }
+        return tracerProviderBuilder.addSpanProcessor(spanProcessor);
+    }
+
+    private static SpanExporter primaryExporter(ConnectorConfiguration connectorConfiguration,
+            ConfigProperties config) {
+        return connectorConfiguration.isDirectOtlpExport()
+                ? SpanExporterFactory.otlpDirect(config, null)
+                : SpanExporterFactory.otlp(config);
     }
 
     public static Optional<OtelConnection> get() {
         return Optional.ofNullable(otelConnection);
     }
 
-    public static synchronized OtelConnection getInstance(String serviceName, String additionalTags,
-            String collectorEndpoint) {
+    public static synchronized OtelConnection getInstance(ConnectorConfiguration connectorConfiguration) {
         if (otelConnection == null) {
-            otelConnection = new OtelConnection(serviceName, additionalTags, collectorEndpoint);
+            otelConnection = new OtelConnection(connectorConfiguration);
         }
         return otelConnection;
     }
 
+    /**
+     * Shuts down the SDK of the connection: the span processors export the spans
+     * left and stop their workers, the shared export pipeline is detached. The
+     * next {@link #getInstance} creates a new connection.
+     */
+    public static synchronized void shutdown() {
+        if (otelConnection == null) {
+            return;
+        }
+        OpenTelemetrySdk sdk = otelConnection.openTelemetry;
+        otelConnection = null;
+        CompletableResultCode result = CompletableResultCode.ofAll(
+                Arrays.asList(sdk.getSdkTracerProvider().shutdown(), sdk.getSdkMeterProvider().shutdown()));
+        if (!result.join(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).isSuccess()) {
+            log.warn("The OpenTelemetry SDK did not shut down in {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+        }
+    }
+
     public SpanBuilder spanBuilder(String spanName) {
         return tracer.spanBuilder(spanName);
     }
@@ -102,6 +305,18 @@ public class OtelConnection implements ContextPropagation {
         openTelemetry.getPropagators().getTextMapPropagator().inject(Context.current(), carrier, textMapSetter);
     }
 
+    /** Injects the propagation fields of context into carrier */
+    public <T> void inject(Context context, T carrier, TextMapSetter<T> textMapSetter) {
+        openTelemetry.getPropagators().getTextMapPropagator().inject(context, carrier, textMapSetter);
+    }
+
+    /**
+     * mule.serverId is a resource attribute, the spans do not repeat it
+     */
+    public boolean isServerIdInResource() {
+        return serverIdInResource;
+    }
+
     public TraceVault getTraceVault() {
         return traceVault;
     }
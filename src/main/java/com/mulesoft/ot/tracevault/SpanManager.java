@@ -1,5 +1,7 @@
 package com.mulesoft.ot.tracevault;
 
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.metrics.ResourceSample;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.context.Context;
@@ -9,54 +11,343 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+/**
+ * Spans of a transaction. Only the spans still open are kept, an ended span is
+ * handed to the span processors and released.
+ *
+ * <p>
+ * A long-running transaction keeps at most maxOpenSpans open child spans. The
+ * spans open longer than the timeout, usually processors whose end was never
+ * notified, are ended as abandoned when new spans start.
+ *
+ * <p>
+ * A deferred child span is kept as a {@link DeferredSpan} and becomes an SDK
+ * span only when it ends, or when it is abandoned or the transaction ends.
+ *
+ * <p>
+ * The open spans are also kept on a {@link SpanStack} in start order. A
+ * processor span is a child of the innermost span of its flow or of the
+ * innermost open scope that contains its location. The notification of a
+ * called flow does not tell the flow-ref that calls it, the span of a called
+ * flow is a child of the innermost open flow span, usually the calling flow,
+ * so the nested flows keep their hierarchy. Concurrent branches share the
+ * stack, a flow called from a branch can nest under a flow of another branch.
+ */
 public class SpanManager implements Serializable {
 
     private static final Logger log = LoggerFactory.getLogger(SpanManager.class);
 
+    // Minimum interval between two searches of abandoned spans
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // The spans of the called flows are kept under the flow name and a sequence,
+    // the same flow can run several times in a transaction
+    private static final String FLOW_KEY_SEPARATOR = "#";
+
     private final String flowName;
     private final Span span;
     private boolean ending = false;
-    private final Map<String, Span> childSpans = new ConcurrentHashMap<>();
+    private final Map<String, OpenSpan> childSpans = new ConcurrentHashMap<>();
     private boolean ended = false;
+    private final int maxOpenSpans;
+    private final long openSpanTimeoutNanos;
+    private volatile long lastSweep;
+    private final ResourceSample resourceSample;
+    private final TraceClock clock;
+    private final SpanStack<OpenSpan> stack;
+    private final AtomicLong flowSequence = new AtomicLong();
 
-    public SpanManager(String flowName, Span span) {
+    /**
+     * @param maxOpenSpans
+     *            maximum number of open child spans, the following ones are not
+     *            recorded
+     * @param openSpanTimeoutNanos
+     *            child spans open longer than this are ended as abandoned, 0
+     *            keeps them until the transaction ends
+     * @param nanoTime
+     *            System.nanoTime() of the transaction start
+     * @param resourceSample
+     *            resources of the thread at the start of the root span, null
+     *            when they are not measured
+     * @param clock
+     *            clock of the transaction, gives the start of the deferred spans
+     */
+    public SpanManager(String flowName, Span span, int maxOpenSpans, long openSpanTimeoutNanos, long nanoTime,
+            ResourceSample resourceSample, TraceClock clock) {
         this.flowName = flowName;
         this.span = span;
+        this.maxOpenSpans = maxOpenSpans;
+        this.openSpanTimeoutNanos = openSpanTimeoutNanos;
+        this.lastSweep = nanoTime;
+        this.resourceSample = resourceSample;
+        this.clock = clock;
+        // The detached spans are also on the stack
+        this.stack = new SpanStack<>((int) Math.min(Integer.MAX_VALUE, 2L * maxOpenSpans));
     }
 
     public Span getSpan() {
         return span;
     }
 
-    public Span addSpan(String location, SpanBuilder spanBuilder) {
+    public Optional<Span> getChildSpan(String location) {
+        return Optional.ofNullable(childSpans.get(location)).map(OpenSpan::getSpan);
+    }
+
+    /**
+     * Innermost open span of the flow flowName, empty when the flow has no span
+     * of its own, like the root flow
+     */
+    public Optional<Span> getFlowSpan(String flowName) {
+        return Optional.ofNullable(stack.innermostFlow(flowName)).map(OpenSpan::getSpan);
+    }
+
+    /**
+     * Adds the span of a flow called by the root flow, child of the innermost open
+     * flow span, usually the calling flow, or of the root span
+     */
+    public Span addFlowSpan(String flowName, SpanBuilder spanBuilder, long nanoTime, TraceClock clock,
+            ResourceSample resourceSample) {
+        OpenSpan caller = stack.innermostFlow();
+        Span parent = caller != null ? caller.getSpan() : span;
+        return addSpan(flowName + FLOW_KEY_SEPARATOR + flowSequence.incrementAndGet(), flowName, spanBuilder,
+                parent, nanoTime, clock, resourceSample);
+    }
+
+    /**
+     * Adds the span of a processor of the flow flowName, child of the innermost
+     * open span of the flow or of the innermost open scope around the processor
+     */
+    public Span addSpan(String location, String flowName, SpanBuilder spanBuilder, long nanoTime,
+            TraceClock clock, ResourceSample resourceSample) {
+        return addSpan(location, null, spanBuilder, parentOf(flowName, location), nanoTime, clock,
+                resourceSample);
+    }
+
+    private Span addSpan(String key, String spanFlowName, SpanBuilder spanBuilder, Span parent, long nanoTime,
+            TraceClock clock, ResourceSample resourceSample) {
         if (ending || ended)
             throw new UnsupportedOperationException(
                     "Flow: " + flowName + ", span: " + (ended ? ", end" : "is finishing"));
-        Span span = spanBuilder.setParent(Context.current().with(getSpan())).startSpan();
-        childSpans.put(location, span);
-        log.debug("Start span: {}, location: {}", span.getSpanContext().getSpanId(), location);
+        sweep(nanoTime, clock);
+        if (childSpans.size() >= maxOpenSpans) {
+            log.debug("Flow: {}, limit of {} open spans reached, location {} is not recorded", flowName,
+                    maxOpenSpans, key);
+            return Span.getInvalid();
+        }
+        Span span = spanBuilder.setParent(Context.current().with(parent)).startSpan();
+        open(key, spanFlowName, new OpenSpan(key, span, null, null, nanoTime, resourceSample));
+        if (log.isDebugEnabled()) {
+            log.debug("Start span: {}, location: {}", span.getSpanContext().getSpanId(), key);
+        }
         return span;
     }
 
+    /**
+     * Adds a child span of the innermost open span of the flow flowName, or of
+     * the innermost open scope around the processor, that is created when it
+     * ends
+     */
+    public void addDeferredSpan(String location, String flowName, DeferredSpan deferredSpan, long nanoTime,
+            ResourceSample resourceSample) {
+        if (ending || ended)
+            throw new UnsupportedOperationException(
+                    "Flow: " + this.flowName + ", span: " + (ended ? ", end" : "is finishing"));
+        sweep(nanoTime, clock);
+        if (childSpans.size() >= maxOpenSpans) {
+            log.debug("Flow: {}, limit of {} open spans reached, location {} is not recorded", this.flowName,
+                    maxOpenSpans, location);
+            return;
+        }
+        open(location, null,
+                new OpenSpan(location, null, deferredSpan, parentOf(flowName, location), nanoTime, resourceSample));
+        log.trace("Start deferred span, location: {}", location);
+    }
+
+    /**
+     * Parent of a span of location started outside the open spans: the innermost
+     * open span of the flow flowName or of a scope around the location
+     *
+     * @param location
+     *            location of the span, null for a span without location
+     */
+    Span getParent(String flowName, String location) {
+        return parentOf(flowName, location);
+    }
+
+    /**
+     * Registers a span of location held by the caller, the processors inside its
+     * location become its children until it is released
+     *
+     * @param location
+     *            location of the span, null when it cannot be a parent
+     * @return releases the span, to call when it ends
+     */
+    Runnable addDetachedSpan(String location, Span detachedSpan, long nanoTime) {
+        OpenSpan openSpan = new OpenSpan(location, detachedSpan, null, null, nanoTime, null);
+        if (location == null || !stack.push(openSpan, null)) {
+            return () -> {
+            };
+        }
+        return () -> stack.remove(openSpan);
+    }
+
+    // A processor running again at the same location replaces the previous span,
+    // which is no longer a parent
+    private void open(String key, String spanFlowName, OpenSpan openSpan) {
+        OpenSpan previous = childSpans.put(key, openSpan);
+        if (previous != null) {
+            stack.remove(previous);
+        }
+        stack.push(openSpan, spanFlowName);
+    }
+
+    // The parent is the span of the flow or a processor span open around the
+    // location, like open-telemetry:span at flow/processors/2 for the processor at
+    // flow/processors/2/processors/0
+    private Span parentOf(String spanFlowName, String location) {
+        OpenSpan parent = stack.innermostParent(spanFlowName, openSpan -> encloses(openSpan.getKey(), location));
+        return parent != null ? parent.materialize(clock) : span;
+    }
+
+    private static boolean encloses(String scope, String location) {
+        return scope != null && location != null && location.length() > scope.length()
+                && location.charAt(scope.length()) == '/' && location.startsWith(scope);
+    }
+
     public void endSpan(String location, Consumer<Span> spanUpdater, Instant endTime) {
         if ((!ending || ended) && childSpans.containsKey(location)) {
-            Span removed = childSpans.remove(location);
-            if (spanUpdater != null) {
-                spanUpdater.accept(removed);
+            OpenSpan removed = childSpans.remove(location);
+            if (removed == null) {
+                return;
             }
-            log.debug("End spanId: {}, location: {}", removed.getSpanContext().getSpanId(), location);
-            removed.end(endTime);
+            end(removed, spanUpdater, endTime);
         }
     }
 
+    /**
+     * Ends the innermost open span of the flow flowName
+     *
+     * @return false when the flow has no open span
+     */
+    public boolean endFlowSpan(String flowName, Consumer<Span> spanUpdater, Instant endTime) {
+        if (ending && !ended) {
+            return false;
+        }
+        OpenSpan flow = stack.innermostFlow(flowName);
+        if (flow == null || !childSpans.remove(flow.getKey(), flow)) {
+            return false;
+        }
+        end(flow, spanUpdater, endTime);
+        return true;
+    }
+
+    private void end(OpenSpan openSpan, Consumer<Span> spanUpdater, Instant endTime) {
+        stack.remove(openSpan);
+        Span span = openSpan.materialize(clock);
+        if (spanUpdater != null) {
+            spanUpdater.accept(span);
+        }
+        if (openSpan.getResourceSample() != null) {
+            openSpan.getResourceSample().end(span);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("End spanId: {}, location: {}", span.getSpanContext().getSpanId(), openSpan.getKey());
+        }
+        span.end(endTime);
+    }
+
     public void end(Instant endTime) {
         ending = true;
-        childSpans.forEach((location, span) -> span.end(endTime));
+        childSpans.forEach((location, openSpan) -> openSpan.materialize(clock).end(endTime));
+        stack.clear();
+        if (resourceSample != null) {
+            resourceSample.end(span);
+        }
         span.end(endTime);
-        log.debug("End span: {}", span.getSpanContext().getSpanId());
+        if (log.isDebugEnabled()) {
+            log.debug("End span: {}", span.getSpanContext().getSpanId());
+        }
         ended = true;
     }
+
+    // Ends the child spans open longer than the timeout, at most once per interval
+    // unless the limit of open spans is reached
+    private void sweep(long nanoTime, TraceClock clock) {
+        if (openSpanTimeoutNanos <= 0) {
+            return;
+        }
+        long last = lastSweep;
+        if (nanoTime - last < SWEEP_INTERVAL_NANOS && childSpans.size() < maxOpenSpans) {
+            return;
+        }
+        lastSweep = nanoTime;
+        childSpans.forEach((location, openSpan) -> {
+            if (nanoTime - openSpan.getStartNanoTime() >= openSpanTimeoutNanos
+                    && childSpans.remove(location, openSpan)) {
+                stack.remove(openSpan);
+                Span abandoned = openSpan.materialize(clock);
+                if (log.isDebugEnabled()) {
+                    log.debug("Flow: {}, abandoned span: {}, location: {}", flowName,
+                            abandoned.getSpanContext().getSpanId(), location);
+                }
+                abandoned.setAttribute(Constants.SPAN_ABANDONED, true);
+                abandoned.end(clock.toInstant(nanoTime));
+            }
+        });
+    }
+
+    private static final class OpenSpan {
+        private final String key;
+        private volatile Span span;
+        private final DeferredSpan deferredSpan;
+        private final Span parent;
+        private final long startNanoTime;
+        private final ResourceSample resourceSample;
+
+        private OpenSpan(String key, Span span, DeferredSpan deferredSpan, Span parent, long startNanoTime,
+                ResourceSample resourceSample) {
+            this.key = key;
+            this.span = span;
+            this.deferredSpan = deferredSpan;
+            this.parent = parent;
+            this.startNanoTime = startNanoTime;
+            this.resourceSample = resourceSample;
+        }
+
+        /**
+         * @return key of the span in the open child spans, the location of a
+         *         detached span
+         */
+        String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the span, null while a deferred span is not materialized
+         */
+        Span getSpan() {
+            return span;
+        }
+
+        synchronized Span materialize(TraceClock clock) {
+            if (span == null) {
+                span = deferredSpan.materialize(parent, clock.toInstant(startNanoTime));
+            }
+            return span;
+        }
+
+        long getStartNanoTime() {
+            return startNanoTime;
+        }
+
+        ResourceSample getResourceSample() {
+            return resourceSample;
+        }
+    }
 }
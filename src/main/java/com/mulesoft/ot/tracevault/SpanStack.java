@@ -0,0 +1,113 @@
+package com.mulesoft.ot.tracevault;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Open spans of a transaction in start order, the innermost last. The spans of
+ * a flow usually end in reverse order, the removals are at the top.
+ *
+ * <p>
+ * An entry is a flow span, with the name of its flow, or a processor span. The
+ * stack is backed by two arrays that grow by doubling, up to a maximum size.
+ */
+final class SpanStack<T> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int maxSize;
+    private Object[] spans = new Object[INITIAL_CAPACITY];
+    private String[] flowNames = new String[INITIAL_CAPACITY];
+    private int size;
+
+    SpanStack(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * @param flowName
+     *            name of the flow of a flow span, null for a processor span
+     * @return false when the stack is full, the span is not added
+     */
+    synchronized boolean push(T span, String flowName) {
+        if (size >= maxSize) {
+            return false;
+        }
+        if (size == spans.length) {
+            int capacity = Math.min(maxSize, spans.length * 2);
+            spans = Arrays.copyOf(spans, capacity);
+            flowNames = Arrays.copyOf(flowNames, capacity);
+        }
+        spans[size] = span;
+        flowNames[size] = flowName;
+        size++;
+        return true;
+    }
+
+    synchronized boolean remove(T span) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (spans[i] == span) {
+                System.arraycopy(spans, i + 1, spans, i, size - i - 1);
+                System.arraycopy(flowNames, i + 1, flowNames, i, size - i - 1);
+                size--;
+                spans[size] = null;
+                flowNames[size] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the innermost span of the flow flowName, null when the flow has no
+     *         open span
+     */
+    @SuppressWarnings("unchecked")
+    synchronized T innermostFlow(String flowName) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (flowNames[i] != null && flowNames[i].equalsIgnoreCase(flowName)) {
+                return (T) spans[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param enclosing
+     *            accepts the processor spans that can be the parent
+     * @return the innermost of the span of the flow flowName and the processor
+     *         spans accepted, null when there is none
+     */
+    @SuppressWarnings("unchecked")
+    synchronized T innermostParent(String flowName, Predicate<T> enclosing) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (flowNames[i] == null ? enclosing.test((T) spans[i]) : flowNames[i].equalsIgnoreCase(flowName)) {
+                return (T) spans[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the innermost flow span, of any flow, null when no flow span is open
+     */
+    @SuppressWarnings("unchecked")
+    synchronized T innermostFlow() {
+        for (int i = size - 1; i >= 0; i--) {
+            if (flowNames[i] != null) {
+                return (T) spans[i];
+            }
+        }
+        return null;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(spans, 0, size, null);
+        Arrays.fill(flowNames, 0, size, null);
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
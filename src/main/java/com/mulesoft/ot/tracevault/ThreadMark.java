@@ -0,0 +1,23 @@
+package com.mulesoft.ot.tracevault;
+
+/**
+ * Time and thread where the last step of a transaction ended
+ */
+public final class ThreadMark {
+
+    private final long nanoTime;
+    private final String threadName;
+
+    public ThreadMark(long nanoTime, String threadName) {
+        this.nanoTime = nanoTime;
+        this.threadName = threadName;
+    }
+
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+}
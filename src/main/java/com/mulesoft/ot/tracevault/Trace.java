@@ -6,11 +6,14 @@ public class Trace implements Serializable {
     private final String rootFlowName;
     private final SpanManager rootFlowSpan;
     private final String traceId;
+    private final TraceClock clock;
+    private volatile ThreadMark lastMark;
 
-    public Trace(String traceId, String rootFlowName, SpanManager rootFlowSpan) {
+    public Trace(String traceId, String rootFlowName, SpanManager rootFlowSpan, TraceClock clock) {
         this.rootFlowName = rootFlowName;
         this.rootFlowSpan = rootFlowSpan;
         this.traceId = traceId;
+        this.clock = clock;
     }
 
     public String getRootFlowName() {
@@ -24,4 +27,16 @@ public class Trace implements Serializable {
     public String getTraceId() {
         return traceId;
     }
+
+    public TraceClock getClock() {
+        return clock;
+    }
+
+    public ThreadMark getLastMark() {
+        return lastMark;
+    }
+
+    public void setLastMark(ThreadMark lastMark) {
+        this.lastMark = lastMark;
+    }
 }
@@ -0,0 +1,35 @@
+package com.mulesoft.ot.tracevault;
+
+import java.time.Instant;
+
+/**
+ * Clock of a trace with nanosecond resolution. The wall clock is read once,
+ * when the trace starts, the following times are calculated from the
+ * monotonic System.nanoTime().
+ */
+public final class TraceClock {
+
+    private final long anchorEpochSecond;
+    private final long anchorNano;
+    private final long anchorNanoTime;
+
+    private TraceClock(Instant anchor, long anchorNanoTime) {
+        this.anchorEpochSecond = anchor.getEpochSecond();
+        this.anchorNano = anchor.getNano();
+        this.anchorNanoTime = anchorNanoTime;
+    }
+
+    /**
+     * Anchors the clock to the current wall clock
+     *
+     * @param nanoTime
+     *            System.nanoTime() that corresponds to the current wall clock
+     */
+    public static TraceClock anchor(long nanoTime) {
+        return new TraceClock(Instant.now(), nanoTime);
+    }
+
+    public Instant toInstant(long nanoTime) {
+        return Instant.ofEpochSecond(anchorEpochSecond, anchorNano + (nanoTime - anchorNanoTime));
+    }
+}
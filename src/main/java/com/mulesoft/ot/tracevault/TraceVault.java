@@ -1,11 +1,12 @@
 package com.mulesoft.ot.tracevault;
 
+import com.mulesoft.ot.metrics.ResourceSample;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.context.Context;
-import java.time.Instant;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +16,8 @@ public class TraceVault {
     private static final Logger log = LoggerFactory.getLogger(TraceVault.class);
     private static TraceVault instance;
     private final ConcurrentHashMap<String, Trace> transactionMap = new ConcurrentHashMap<>();
+    private volatile int maxOpenSpans = Integer.MAX_VALUE;
+    private volatile long openSpanTimeoutNanos;
 
     public static synchronized TraceVault getInstance() {
         if (instance == null) {
@@ -23,47 +26,198 @@ public class TraceVault {
         return instance;
     }
 
-    public void start(final String transactionId, final String rootFlowName, SpanBuilder rootFlowSpan) {
+    /**
+     * Limits of the open spans of every transaction started after the call
+     *
+     * @param maxOpenSpans
+     *            maximum number of open spans per transaction, 0 or less has no
+     *            limit
+     * @param openSpanTimeoutSeconds
+     *            spans open longer than this are ended as abandoned, 0 disables
+     *            the timeout
+     */
+    public void setOpenSpanLimits(int maxOpenSpans, long openSpanTimeoutSeconds) {
+        this.maxOpenSpans = maxOpenSpans > 0 ? maxOpenSpans : Integer.MAX_VALUE;
+        this.openSpanTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(0, openSpanTimeoutSeconds));
+    }
+
+    /**
+     * Starts the transaction, or a span for a nested flow when the transaction
+     * already exists
+     *
+     * @param nanoTime
+     *            System.nanoTime() of the flow start
+     * @param resourceSample
+     *            resources of the thread at the flow start, null when they are
+     *            not measured
+     */
+    public void start(final String transactionId, final String rootFlowName, SpanBuilder rootFlowSpan,
+            long nanoTime, ResourceSample resourceSample) {
         Optional<Trace> transaction = getTransaction(transactionId);
         if (transaction.isPresent()) {
             log.debug("Start transaction: {}, flow: {}", transactionId, rootFlowName);
-            transaction.get().getRootFlowSpan().addSpan(rootFlowName, rootFlowSpan);
+            TraceClock clock = transaction.get().getClock();
+            rootFlowSpan.setStartTimestamp(clock.toInstant(nanoTime));
+            transaction.get().getRootFlowSpan().addFlowSpan(rootFlowName, rootFlowSpan, nanoTime, clock,
+                    resourceSample);
         } else {
-            Span span = rootFlowSpan.startSpan();
-            log.debug("Start transaction: {}, flow: {}, spanId {}, traceId {}", transactionId, rootFlowName,
-                    span.getSpanContext().getSpanId(), span.getSpanContext().getTraceId());
+            TraceClock clock = TraceClock.anchor(nanoTime);
+            Span span = rootFlowSpan.setStartTimestamp(clock.toInstant(nanoTime)).startSpan();
+            if (log.isDebugEnabled()) {
+                log.debug("Start transaction: {}, flow: {}, spanId {}, traceId {}", transactionId, rootFlowName,
+                        span.getSpanContext().getSpanId(), span.getSpanContext().getTraceId());
+            }
             transactionMap.put(transactionId,
-                    new Trace(span.getSpanContext().getTraceId(), rootFlowName, new SpanManager(rootFlowName, span)));
+                    new Trace(span.getSpanContext().getTraceId(), rootFlowName, new SpanManager(rootFlowName, span,
+                            maxOpenSpans, openSpanTimeoutNanos, nanoTime, resourceSample, clock), clock));
         }
     }
 
-    public void end(String transactionId, String rootFlowName, Consumer<Span> spanUpdater, Instant endTime) {
+    /**
+     * Ends the span of a nested flow, or the transaction when rootFlowName is its
+     * root flow
+     */
+    public void end(String transactionId, String rootFlowName, Consumer<Span> spanUpdater, long nanoTime) {
         log.debug("End transaction: {}, flow: {}", transactionId, rootFlowName);
-        getTransaction(transactionId).filter(t -> rootFlowName.equalsIgnoreCase(t.getRootFlowName()))
+        Optional<Trace> transaction = getTransaction(transactionId);
+        if (transaction.isPresent() && transaction.get().getRootFlowSpan().endFlowSpan(rootFlowName, spanUpdater,
+                transaction.get().getClock().toInstant(nanoTime))) {
+            return;
+        }
+        transaction.filter(t -> rootFlowName.equalsIgnoreCase(t.getRootFlowName()))
                 .ifPresent(trace -> {
                     Trace removed = transactionMap.remove(transactionId);
                     Span rootSpan = removed.getRootFlowSpan().getSpan();
                     if (spanUpdater != null)
                         spanUpdater.accept(rootSpan);
-                    removed.getRootFlowSpan().end(endTime);
-                    log.debug("Removing span, transaction: {}, flow: {}, spanId: {}, traceId: {}", transactionId,
-                            rootFlowName, rootSpan.getSpanContext().getSpanId(),
-                            rootSpan.getSpanContext().getTraceId());
+                    removed.getRootFlowSpan().end(removed.getClock().toInstant(nanoTime));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Removing span, transaction: {}, flow: {}, spanId: {}, traceId: {}",
+                                transactionId, rootFlowName, rootSpan.getSpanContext().getSpanId(),
+                                rootSpan.getSpanContext().getTraceId());
+                    }
                 });
     }
 
-    public void startSpan(String transactionId, String location, SpanBuilder spanBuilder) {
-        getTransaction(transactionId).ifPresent(trace -> {
-            Span span = trace.getRootFlowSpan().addSpan(location, spanBuilder);
-            log.debug("Start span, transaction: {}, location: {}, spanId: {}, traceId: {}", transactionId, location,
-                    span.getSpanContext().getSpanId(), span.getSpanContext().getTraceId());
+    /**
+     * Registers a span of location, child of the span of the flow flowName, that
+     * is created in the SDK when it ends
+     */
+    public void startDeferredSpan(String transactionId, String flowName, String location,
+            DeferredSpan deferredSpan, long nanoTime, ResourceSample resourceSample) {
+        getTransaction(transactionId).ifPresent(trace -> trace.getRootFlowSpan().addDeferredSpan(location, flowName,
+                deferredSpan, nanoTime, resourceSample));
+    }
+
+    /**
+     * Starts a span registered with location, child of the span of the flow
+     * flowName
+     */
+    public Optional<Span> startSpan(String transactionId, String flowName, String location,
+            SpanBuilder spanBuilder, long nanoTime) {
+        return startSpan(transactionId, flowName, location, spanBuilder, nanoTime, null);
+    }
+
+    /**
+     * Starts a span registered with location, child of the span of the flow
+     * flowName
+     *
+     * @param resourceSample
+     *            resources of the thread at the start, null when they are not
+     *            measured
+     */
+    public Optional<Span> startSpan(String transactionId, String flowName, String location,
+            SpanBuilder spanBuilder, long nanoTime, ResourceSample resourceSample) {
+        return getTransaction(transactionId).map(trace -> {
+            spanBuilder.setStartTimestamp(trace.getClock().toInstant(nanoTime));
+            Span span = trace.getRootFlowSpan().addSpan(location, flowName, spanBuilder, nanoTime, trace.getClock(),
+                    resourceSample);
+            if (log.isDebugEnabled()) {
+                log.debug("Start span, transaction: {}, flow: {}, location: {}, spanId: {}", transactionId,
+                        flowName, location, span.getSpanContext().getSpanId());
+            }
+            return span;
         });
     }
 
-    public void endSpan(String transactionId, String location, Consumer<Span> spanUpdater, Instant endTime) {
+    /**
+     * Starts a span of the flow flowName that is not kept by the vault, the caller
+     * holds it and ends it. Until then the processors inside its location are its
+     * children
+     *
+     * @param location
+     *            location of the span, null for a span without location
+     */
+    public Optional<DetachedSpan> startDetachedSpan(String transactionId, String flowName, String location,
+            SpanBuilder spanBuilder, long nanoTime, ResourceSample resourceSample) {
+        return getTransaction(transactionId).map(trace -> {
+            Span parent = trace.getRootFlowSpan().getParent(flowName, location);
+            Span span = spanBuilder.setParent(Context.current().with(parent))
+                    .setStartTimestamp(trace.getClock().toInstant(nanoTime)).startSpan();
+            if (log.isTraceEnabled()) {
+                log.trace("Start detached span, transaction: {}, flow: {}, spanId: {}", transactionId, flowName,
+                        span.getSpanContext().getSpanId());
+            }
+            return new DetachedSpan(span, trace.getClock(), resourceSample,
+                    trace.getRootFlowSpan().addDetachedSpan(location, span, nanoTime));
+        });
+    }
+
+    public void endSpan(String transactionId, String location, Consumer<Span> spanUpdater, long nanoTime) {
         log.trace("End span, transaction: {}, location: {}", transactionId, location);
-        getTransaction(transactionId)
-                .ifPresent(trace -> trace.getRootFlowSpan().endSpan(location, spanUpdater, endTime));
+        getTransaction(transactionId).ifPresent(trace -> trace.getRootFlowSpan().endSpan(location, spanUpdater,
+                trace.getClock().toInstant(nanoTime)));
+    }
+
+    /**
+     * Span of the root flow of the transaction
+     */
+    public Optional<Span> getRootSpan(String transactionId) {
+        return getTransaction(transactionId).map(Trace::getRootFlowSpan).map(SpanManager::getSpan);
+    }
+
+    /**
+     * Span of the flow flowName in the transaction, the root span when the flow
+     * has no span of its own
+     */
+    public Optional<Span> getFlowSpan(String transactionId, String flowName) {
+        return getTransaction(transactionId).map(trace -> getFlowSpan(trace, flowName));
+    }
+
+    private Span getFlowSpan(Trace trace, String flowName) {
+        SpanManager rootFlowSpan = trace.getRootFlowSpan();
+        return rootFlowSpan.getFlowSpan(flowName).orElse(rootFlowSpan.getSpan());
+    }
+
+    /**
+     * Marks the end of a step of the transaction in the current thread
+     *
+     * @return the previous mark, empty when the transaction has no mark
+     */
+    public Optional<ThreadMark> mark(String transactionId, long nanoTime) {
+        return getTransaction(transactionId).flatMap(trace -> {
+            ThreadMark previous = trace.getLastMark();
+            trace.setLastMark(new ThreadMark(nanoTime, Thread.currentThread().getName()));
+            return Optional.ofNullable(previous);
+        });
+    }
+
+    /**
+     * Last mark of the transaction
+     */
+    public Optional<ThreadMark> getLastMark(String transactionId) {
+        return getTransaction(transactionId).map(Trace::getLastMark);
+    }
+
+    public boolean hasTransaction(String transactionId) {
+        return transactionMap.containsKey(transactionId);
+    }
+
+    /**
+     * Number of transactions in progress
+     */
+    public int getTransactionCount() {
+        return transactionMap.size();
     }
 
     private Optional<Trace> getTransaction(String transactionId) {
@@ -75,6 +229,16 @@ public class TraceVault {
                 .map(s -> s.storeInContext(Context.current())).orElse(Context.current());
     }
 
+    /**
+     * Context of the open span of location, of the span of the flow flowName when
+     * location has no open span
+     */
+    public Context getContext(String transactionId, String flowName, String location) {
+        return getTransaction(transactionId)
+                .map(trace -> trace.getRootFlowSpan().getChildSpan(location).orElse(getFlowSpan(trace, flowName)))
+                .map(s -> s.storeInContext(Context.current())).orElse(Context.current());
+    }
+
     public String getTraceIdForTransaction(String transactionId) {
         Optional<Trace> transaction = getTransaction(transactionId);
         return transaction.map(Trace::getTraceId).orElse(null);
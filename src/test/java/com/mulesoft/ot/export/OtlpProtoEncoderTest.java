@@ -0,0 +1,195 @@
+package com.mulesoft.ot.export;
+
+import com.google.protobuf.ByteString;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.trace.v1.ResourceSpans;
+import io.opentelemetry.proto.trace.v1.ScopeSpans;
+import io.opentelemetry.proto.trace.v1.Status;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Decodes the requests of the encoder with the protobuf classes of OTLP
+ */
+public class OtlpProtoEncoderTest {
+
+    private static final Resource RESOURCE = Resource
+            .create(Attributes.of(AttributeKey.stringKey("service.name"), "orders-api"));
+
+    @Test
+    public void encodesSpans() throws Exception {
+        List<SpanData> spans = record(tracer -> {
+            Span flow = tracer.spanBuilder("orders-flow").setSpanKind(SpanKind.SERVER).startSpan();
+            Span request = tracer.spanBuilder("http:request").setSpanKind(SpanKind.CLIENT)
+                    .setParent(Context.root().with(flow)).startSpan();
+            request.setAttribute("http.method", "GET");
+            request.addEvent("retry", Attributes.of(AttributeKey.longKey("attempt"), 2L));
+            request.setStatus(StatusCode.ERROR, "Connection refused");
+            request.end();
+            flow.end();
+        });
+
+        ExportTraceServiceRequest request = encode(spans);
+
+        assertEquals(1, request.getResourceSpansCount());
+        ResourceSpans resourceSpans = request.getResourceSpans(0);
+        assertEquals("orders-api",
+                attributes(resourceSpans.getResource().getAttributesList()).get("service.name").getStringValue());
+        ScopeSpans scopeSpans = resourceSpans.getScopeSpans(0);
+        assertEquals("test", scopeSpans.getScope().getName());
+        assertEquals("1.0", scopeSpans.getScope().getVersion());
+        assertEquals(2, scopeSpans.getSpansCount());
+
+        SpanData expected = spans.get(0);
+        io.opentelemetry.proto.trace.v1.Span span = scopeSpans.getSpans(0);
+        assertEquals(expected.getTraceId(), hex(span.getTraceId()));
+        assertEquals(expected.getSpanId(), hex(span.getSpanId()));
+        assertEquals(expected.getParentSpanId(), hex(span.getParentSpanId()));
+        assertEquals("http:request", span.getName());
+        assertEquals(io.opentelemetry.proto.trace.v1.Span.SpanKind.SPAN_KIND_CLIENT, span.getKind());
+        assertEquals(expected.getStartEpochNanos(), span.getStartTimeUnixNano());
+        assertEquals(expected.getEndEpochNanos(), span.getEndTimeUnixNano());
+        assertEquals("GET", attributes(span.getAttributesList()).get("http.method").getStringValue());
+        assertEquals("retry", span.getEvents(0).getName());
+        assertEquals(2L, attributes(span.getEvents(0).getAttributesList()).get("attempt").getIntValue());
+        assertEquals(Status.StatusCode.STATUS_CODE_ERROR, span.getStatus().getCode());
+        assertEquals("Connection refused", span.getStatus().getMessage());
+
+        io.opentelemetry.proto.trace.v1.Span root = scopeSpans.getSpans(1);
+        assertTrue(root.getParentSpanId().isEmpty());
+        assertEquals(io.opentelemetry.proto.trace.v1.Span.SpanKind.SPAN_KIND_SERVER, root.getKind());
+    }
+
+    @Test
+    public void encodesDefaultValuesOfAttributes() throws Exception {
+        List<SpanData> spans = record(tracer -> {
+            Span span = tracer.spanBuilder("set-payload").startSpan();
+            span.setAttribute("retry", false);
+            span.setAttribute("count", 0L);
+            span.setAttribute("ratio", 0.0);
+            span.setAttribute("empty", "");
+            span.setAttribute(AttributeKey.stringArrayKey("names"), Arrays.asList("", "orders"));
+            span.setAttribute(AttributeKey.booleanArrayKey("flags"), Arrays.asList(false, true));
+            span.setAttribute(AttributeKey.longArrayKey("codes"), Arrays.asList(0L, 200L));
+            span.end();
+        });
+
+        Map<String, AnyValue> attributes = attributes(
+                encode(spans).getResourceSpans(0).getScopeSpans(0).getSpans(0).getAttributesList());
+
+        assertEquals(AnyValue.ValueCase.BOOL_VALUE, attributes.get("retry").getValueCase());
+        assertFalse(attributes.get("retry").getBoolValue());
+        assertEquals(AnyValue.ValueCase.INT_VALUE, attributes.get("count").getValueCase());
+        assertEquals(0L, attributes.get("count").getIntValue());
+        assertEquals(AnyValue.ValueCase.DOUBLE_VALUE, attributes.get("ratio").getValueCase());
+        assertEquals(0.0, attributes.get("ratio").getDoubleValue(), 0.0);
+        assertEquals(AnyValue.ValueCase.STRING_VALUE, attributes.get("empty").getValueCase());
+        assertEquals("", attributes.get("empty").getStringValue());
+
+        List<AnyValue> names = attributes.get("names").getArrayValue().getValuesList();
+        assertEquals(AnyValue.ValueCase.STRING_VALUE, names.get(0).getValueCase());
+        assertEquals("orders", names.get(1).getStringValue());
+        List<AnyValue> flags = attributes.get("flags").getArrayValue().getValuesList();
+        assertEquals(AnyValue.ValueCase.BOOL_VALUE, flags.get(0).getValueCase());
+        assertTrue(flags.get(1).getBoolValue());
+        List<AnyValue> codes = attributes.get("codes").getArrayValue().getValuesList();
+        assertEquals(AnyValue.ValueCase.INT_VALUE, codes.get(0).getValueCase());
+        assertEquals(200L, codes.get(1).getIntValue());
+    }
+
+    @Test
+    public void encodesLargeBatches() throws Exception {
+        // Nested messages longer than 127 bytes shift their content for the length
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            description.append('\u00e9');
+        }
+        List<SpanData> spans = record(tracer -> {
+            for (int i = 0; i < 1000; i++) {
+                Span span = tracer.spanBuilder("processor-" + i).startSpan();
+                span.setAttribute("description", description.toString());
+                span.end();
+            }
+        });
+
+        ScopeSpans scopeSpans = encode(spans).getResourceSpans(0).getScopeSpans(0);
+
+        assertEquals(1000, scopeSpans.getSpansCount());
+        assertEquals("processor-999", scopeSpans.getSpans(999).getName());
+        assertEquals(description.toString(),
+                attributes(scopeSpans.getSpans(999).getAttributesList()).get("description").getStringValue());
+    }
+
+    private static ExportTraceServiceRequest encode(List<SpanData> spans) throws Exception {
+        OtlpProtoEncoder encoder = new OtlpProtoEncoder();
+        encoder.encode(spans);
+        return ExportTraceServiceRequest.parseFrom(encoder.toByteArray());
+    }
+
+    private static List<SpanData> record(Consumer<Tracer> spans) {
+        List<SpanData> recorded = new ArrayList<>();
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder().setResource(RESOURCE)
+                .addSpanProcessor(new SpanProcessor() {
+                    @Override
+                    public void onStart(Context parentContext, ReadWriteSpan span) {
+                    }
+
+                    @Override
+                    public boolean isStartRequired() {
+                        return false;
+                    }
+
+                    @Override
+                    public void onEnd(ReadableSpan span) {
+                        recorded.add(span.toSpanData());
+                    }
+
+                    @Override
+                    public boolean isEndRequired() {
+                        return true;
+                    }
+                }).build();
+        spans.accept(tracerProvider.get("test", "1.0"));
+        tracerProvider.shutdown();
+        return recorded;
+    }
+
+    private static Map<String, AnyValue> attributes(List<KeyValue> keyValues) {
+        Map<String, AnyValue> attributes = new HashMap<>();
+        keyValues.forEach(keyValue -> attributes.put(keyValue.getKey(), keyValue.getValue()));
+        return attributes;
+    }
+
+    private static String hex(ByteString bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes.toByteArray()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package com.mulesoft.ot.export;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Eviction and drop counting of the queue, while its worker is held in an export
+ */
+public class PrioritySpanProcessorTest {
+
+    @Test
+    public void highPrioritySpansEvictLowPrioritySpans() throws Exception {
+        BlockingSpanExporter exporter = new BlockingSpanExporter();
+        // 4 spans, 2 of them reserved for the high priority spans
+        PrioritySpanProcessor queue = new PrioritySpanProcessor("test", exporter, 4, 50, 1000);
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(queue).build();
+        Tracer tracer = tracerProvider.get("test");
+        Span flow = tracer.spanBuilder("flow").setSpanKind(SpanKind.SERVER).startSpan();
+
+        child(tracer, flow, "held").end();
+        queue.forceFlush();
+        assertTrue(exporter.entered.await(10, TimeUnit.SECONDS));
+
+        // The low priority spans fill only the share not reserved
+        child(tracer, flow, "low-1").end();
+        child(tracer, flow, "low-2").end();
+        child(tracer, flow, "low-3").end();
+        assertEquals(2, queue.getQueueSize());
+        assertEquals(0, queue.getDroppedHighPriority());
+        assertEquals(1, queue.getDroppedLowPriority());
+
+        // Root spans and ERROR spans are high priority, a full queue evicts the low
+        // priority spans for them
+        tracer.spanBuilder("root-1").startSpan().end();
+        error(child(tracer, flow, "error-1")).end();
+        tracer.spanBuilder("root-2").startSpan().end();
+        error(child(tracer, flow, "error-2")).end();
+        assertEquals(4, queue.getQueueSize());
+        assertEquals(0, queue.getDroppedHighPriority());
+        assertEquals(3, queue.getDroppedLowPriority());
+
+        // Without low priority spans left, the high priority span is dropped
+        tracer.spanBuilder("root-3").startSpan().end();
+        assertEquals(4, queue.getQueueSize());
+        assertEquals(1, queue.getDroppedHighPriority());
+        assertEquals(3, queue.getDroppedLowPriority());
+
+        exporter.release.countDown();
+        tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+
+        assertEquals(new HashSet<>(Arrays.asList("held", "root-1", "error-1", "root-2", "error-2")),
+                new HashSet<>(exporter.exported));
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    public void slowServerSpansAreHighPriority() throws Exception {
+        BlockingSpanExporter exporter = new BlockingSpanExporter();
+        PrioritySpanProcessor queue = new PrioritySpanProcessor("test", exporter, 2, 50, 100);
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(queue).build();
+        Tracer tracer = tracerProvider.get("test");
+        Span flow = tracer.spanBuilder("flow").setSpanKind(SpanKind.SERVER).startSpan();
+
+        child(tracer, flow, "held").end();
+        queue.forceFlush();
+        assertTrue(exporter.entered.await(10, TimeUnit.SECONDS));
+
+        child(tracer, flow, "low").end();
+        // Slower than 100 milliseconds
+        Span slow = tracer.spanBuilder("slow").setSpanKind(SpanKind.SERVER)
+                .setParent(Context.root().with(flow)).setStartTimestamp(0, TimeUnit.NANOSECONDS).startSpan();
+        slow.end(TimeUnit.MILLISECONDS.toNanos(150), TimeUnit.NANOSECONDS);
+        Span fast = tracer.spanBuilder("fast").setSpanKind(SpanKind.SERVER)
+                .setParent(Context.root().with(flow)).setStartTimestamp(0, TimeUnit.NANOSECONDS).startSpan();
+        fast.end(TimeUnit.MILLISECONDS.toNanos(50), TimeUnit.NANOSECONDS);
+
+        assertEquals(2, queue.getQueueSize());
+        assertEquals(0, queue.getDroppedHighPriority());
+        assertEquals(1, queue.getDroppedLowPriority());
+
+        exporter.release.countDown();
+        tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+
+        assertEquals(new HashSet<>(Arrays.asList("held", "low", "slow")), new HashSet<>(exporter.exported));
+    }
+
+    private static Span child(Tracer tracer, Span parent, String name) {
+        return tracer.spanBuilder(name).setParent(Context.root().with(parent)).startSpan();
+    }
+
+    private static Span error(Span span) {
+        return span.setStatus(StatusCode.ERROR);
+    }
+
+    // Holds the worker in the first export until released
+    private static final class BlockingSpanExporter implements SpanExporter {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> exported = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            entered.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            spans.forEach(span -> exported.add(span.getName()));
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
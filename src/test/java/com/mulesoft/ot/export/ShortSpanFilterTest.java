@@ -0,0 +1,173 @@
+package com.mulesoft.ot.export;
+
+import com.mulesoft.ot.Constants;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Thresholds of the filter and the spans it forwards to the export processors
+ */
+public class ShortSpanFilterTest {
+
+    private static final AttributeKey<Long> DROPPED_COUNT = AttributeKey.longKey(Constants.SPAN_DROPPED_CHILDREN);
+    private static final AttributeKey<Long> DROPPED_DURATION = AttributeKey
+            .longKey(Constants.SPAN_DROPPED_CHILDREN_DURATION);
+
+    @Test
+    public void parsesThresholds() {
+        assertTrue(new ShortSpanFilter(null).isEmpty());
+        assertTrue(new ShortSpanFilter(" ").isEmpty());
+        assertTrue(new ShortSpanFilter("0, db=0").isEmpty());
+        assertFalse(new ShortSpanFilter("0.5").isEmpty());
+        assertFalse(new ShortSpanFilter("ee=5,").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsThresholdsNotNumbers() {
+        new ShortSpanFilter("1, ee=fast");
+    }
+
+    @Test
+    public void dropsShortProcessorSpans() {
+        Map<String, SpanData> exported = record("1, EE=5, db=0", tracer -> {
+            Span flow = tracer.spanBuilder("orders-flow").setSpanKind(SpanKind.SERVER).startSpan();
+            processor(tracer, flow, "transform", "ee", 2);
+            processor(tracer, flow, "select", "db", 1);
+            processor(tracer, flow, "logger", "mule", 0.5);
+            processor(tracer, flow, "lookup", "mule", 3);
+            // Spans without processor namespace, like open-telemetry:span scopes
+            end(tracer.spanBuilder("scope").setParent(Context.root().with(flow)).startSpan(), 0.1);
+            flow.end();
+        });
+
+        assertEquals(4, exported.size());
+        assertFalse(exported.containsKey("transform"));
+        assertFalse(exported.containsKey("logger"));
+        assertTrue(exported.containsKey("select"));
+        assertTrue(exported.containsKey("lookup"));
+        assertTrue(exported.containsKey("scope"));
+        SpanData flow = exported.get("orders-flow");
+        assertEquals(2L, (long) flow.getAttributes().get(DROPPED_COUNT));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(2500), (long) flow.getAttributes().get(DROPPED_DURATION));
+    }
+
+    @Test
+    public void keepsShortSpansWithStatusError() {
+        Map<String, SpanData> exported = record("5", tracer -> {
+            Span flow = tracer.spanBuilder("orders-flow").setSpanKind(SpanKind.SERVER).startSpan();
+            Span transform = start(tracer, flow, "transform", "ee");
+            transform.setStatus(StatusCode.ERROR);
+            end(transform, 1);
+            flow.end();
+        });
+
+        assertTrue(exported.containsKey("transform"));
+        assertNull(exported.get("orders-flow").getAttributes().get(DROPPED_COUNT));
+    }
+
+    @Test
+    public void keepsShortParentsOfSpansKept() {
+        Map<String, SpanData> exported = record("5", tracer -> {
+            Span flow = tracer.spanBuilder("orders-flow").setSpanKind(SpanKind.SERVER).startSpan();
+
+            // Parent of a CLIENT span
+            Span until = start(tracer, flow, "until-successful", "mule");
+            end(tracer.spanBuilder("request").setSpanKind(SpanKind.CLIENT).setParent(Context.root().with(until))
+                    .setStartTimestamp(0, TimeUnit.NANOSECONDS).startSpan(), 1);
+            end(until, 2);
+
+            // Parent of a span with status ERROR
+            Span tryScope = start(tracer, flow, "try", "mule");
+            Span raise = start(tracer, tryScope, "raise-error", "mule");
+            raise.setStatus(StatusCode.ERROR);
+            end(raise, 1);
+            end(tryScope, 2);
+
+            // Parent of a span still open
+            Span async = start(tracer, flow, "async", "mule");
+            Span logger = start(tracer, async, "logger", "mule");
+            end(async, 1);
+            end(logger, 10);
+
+            // Parent of spans dropped only
+            Span choice = start(tracer, flow, "choice", "mule");
+            processor(tracer, choice, "set-payload", "mule", 1);
+            end(choice, 2);
+            flow.end();
+        });
+
+        assertTrue(exported.containsKey("until-successful"));
+        assertTrue(exported.containsKey("request"));
+        assertTrue(exported.containsKey("try"));
+        assertTrue(exported.containsKey("raise-error"));
+        assertTrue(exported.containsKey("async"));
+        assertTrue(exported.containsKey("logger"));
+        assertFalse(exported.containsKey("choice"));
+        assertFalse(exported.containsKey("set-payload"));
+        assertEquals(1L, (long) exported.get("orders-flow").getAttributes().get(DROPPED_COUNT));
+    }
+
+    private static Span start(Tracer tracer, Span parent, String name, String namespace) {
+        return tracer.spanBuilder(name).setParent(Context.root().with(parent))
+                .setAttribute(Constants.SERVICE_PROCESSOR_NAMESPACE, namespace)
+                .setStartTimestamp(0, TimeUnit.NANOSECONDS).startSpan();
+    }
+
+    private static void processor(Tracer tracer, Span parent, String name, String namespace, double millis) {
+        end(start(tracer, parent, name, namespace), millis);
+    }
+
+    // The spans start at 0, the end is the latency
+    private static void end(Span span, double millis) {
+        span.end((long) (millis * TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+
+    private static Map<String, SpanData> record(String thresholds, Consumer<Tracer> spans) {
+        Map<String, SpanData> exported = new ConcurrentHashMap<>();
+        ShortSpanFilter filter = new ShortSpanFilter(thresholds);
+        filter.forwardTo(new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                exported.put(span.getName(), span.toSpanData());
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+        });
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder().addSpanProcessor(filter).build();
+        spans.accept(tracerProvider.get("test"));
+        tracerProvider.shutdown();
+        return exported;
+    }
+}
@@ -0,0 +1,103 @@
+package com.mulesoft.ot.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bucket math and percentiles of the histogram
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 16; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertEquals(value, index);
+            assertEquals(value, LatencyHistogram.bucketUpperBound(index));
+        }
+    }
+
+    @Test
+    public void bucketsContainTheirValuesWithinTheRelativeError() {
+        for (long value = 16; value < (1L << 36); value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue("value " + value + ", bound " + upperBound, upperBound >= value);
+            assertTrue("value " + value + ", bound " + upperBound, upperBound - value < value / 16.0 + 1);
+            assertEquals(index, LatencyHistogram.bucketIndex(upperBound));
+            assertEquals(index + 1, LatencyHistogram.bucketIndex(upperBound + 1));
+        }
+    }
+
+    @Test
+    public void valuesAboveTheLastExponentGoToTheLastBucket() {
+        int last = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(last, LatencyHistogram.bucketIndex(1L << 40));
+        assertTrue(last > LatencyHistogram.bucketIndex((1L << 36) - 1));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getSum());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500, snapshot.getValueAtPercentile(50), 500 / 16.0);
+        assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 16.0);
+        assertEquals(1000, snapshot.getValueAtPercentile(100));
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void percentilesDoNotExceedTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.snapshot(false).getValueAtPercentile(50));
+    }
+
+    @Test
+    public void valuesAboveTheRangeKeepTheirMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1L << 40);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(1L << 40, snapshot.getMax());
+        assertEquals(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(1L << 40)),
+                snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void resetStartsANewWindow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.record(200);
+
+        assertEquals(2, histogram.snapshot(true).getCount());
+
+        LatencyHistogram.Snapshot empty = histogram.snapshot(false);
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getSum());
+        assertEquals(0, empty.getMax());
+        assertEquals(0, empty.getValueAtPercentile(50));
+    }
+}
@@ -0,0 +1,133 @@
+package com.mulesoft.ot.replay;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Records written by the {@link NotificationLogWriter} and read back
+ */
+public class NotificationLogTest {
+
+    @Test
+    public void readsTheRecordsWritten() throws IOException {
+        long now = System.nanoTime();
+        List<NotificationRecord> records = Arrays.asList(
+                new NotificationRecord(NotificationRecord.FLOW_START, now, "0-1", "orders-flow", null, null, null,
+                        null, "cpuLight.01"),
+                new NotificationRecord(NotificationRecord.PROCESSOR_START, now + 1_000, "0-1", "orders-flow",
+                        "orders-flow/processors/0", "http", "request", null, "cpuLight.01"),
+                // Notifications of other threads are not always in nanoTime order
+                new NotificationRecord(NotificationRecord.PROCESSOR_END, now + 500, "0-1", "orders-flow",
+                        "orders-flow/processors/0", "http", "request", "HTTP:CONNECTIVITY", "io.02"),
+                new NotificationRecord(NotificationRecord.FLOW_END, now + 3_000_000_000L, "0-1", "orders-flow", null,
+                        null, null, "HTTP:CONNECTIVITY", "cpuLight.01"),
+                new NotificationRecord(NotificationRecord.FLOW_START, now - 3_000_000_000L, "0-2",
+                        "commandes-\u00e9t\u00e9", null, null, null, null, ""));
+        Path file = Files.createTempFile("notifications", ".log");
+        try {
+            long before = System.currentTimeMillis();
+            try (NotificationLogWriter writer = new NotificationLogWriter(file)) {
+                for (NotificationRecord record : records) {
+                    writer.write(record);
+                }
+                writer.flush();
+                assertEquals(Files.size(file), writer.size());
+            }
+
+            assertEquals(records.toString(), read(file).toString());
+            try (NotificationLogReader reader = new NotificationLogReader(file)) {
+                assertTrue(reader.getStartEpochMillis() >= before);
+                assertTrue(reader.getStartEpochMillis() <= System.currentTimeMillis());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void writesStringsOutOfTheTableWhenFull() throws IOException {
+        List<NotificationRecord> records = new ArrayList<>();
+        for (int i = 0; i < NotificationLogWriter.MAX_STRINGS / 7 + 10; i++) {
+            records.add(new NotificationRecord(NotificationRecord.PROCESSOR_END, i, "c" + i, "f" + i, "l" + i,
+                    "n" + i, "p" + i, "e" + i, "t" + i));
+        }
+        // Strings of the table, and the first ones out of the table repeated
+        records.add(new NotificationRecord(NotificationRecord.PROCESSOR_END, 0, "c0", "f0", "l0", "n0", "p0", "e0",
+                "t" + (NotificationLogWriter.MAX_STRINGS / 7 + 9)));
+        Path file = Files.createTempFile("notifications", ".log");
+        try {
+            try (NotificationLogWriter writer = new NotificationLogWriter(file)) {
+                for (NotificationRecord record : records) {
+                    writer.write(record);
+                }
+            }
+
+            assertEquals(records.toString(), read(file).toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void endsAtATruncatedRecord() throws IOException {
+        Path file = Files.createTempFile("notifications", ".log");
+        try {
+            try (NotificationLogWriter writer = new NotificationLogWriter(file)) {
+                writer.write(new NotificationRecord(NotificationRecord.FLOW_START, 1, "0-1", "orders-flow", null,
+                        null, null, null, "cpuLight.01"));
+                writer.write(new NotificationRecord(NotificationRecord.FLOW_END, 2, "0-1", "orders-flow", null, null,
+                        null, null, "cpuLight.01"));
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+            try (NotificationLogReader reader = new NotificationLogReader(file)) {
+                assertEquals("orders-flow", reader.next().getFlowName());
+                assertNull(reader.next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("notifications", ".log");
+        try {
+            try (OutputStream output = Files.newOutputStream(file)) {
+                output.write("not a notification log".getBytes("UTF-8"));
+            }
+            try {
+                new NotificationLogReader(file).close();
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Not a notification log"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<NotificationRecord> read(Path file) throws IOException {
+        List<NotificationRecord> records = new ArrayList<>();
+        try (NotificationLogReader reader = new NotificationLogReader(file)) {
+            NotificationRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+}
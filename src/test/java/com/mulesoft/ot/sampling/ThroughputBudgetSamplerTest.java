@@ -0,0 +1,146 @@
+package com.mulesoft.ot.sampling;
+
+import com.mulesoft.ot.Constants;
+import com.mulesoft.ot.api.SamplingBudgetScope;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Budget and per flow floor of the sampler, with a clock moved by the test
+ */
+public class ThroughputBudgetSamplerTest {
+
+    private static final AttributeKey<Double> SAMPLING_PROBABILITY = AttributeKey
+            .doubleKey(Constants.SAMPLING_PROBABILITY);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private final long[] now = {0};
+
+    @Test
+    public void samplesEverythingBeforeTheFirstRate() {
+        ThroughputBudgetSampler sampler = sampler(() -> 1, 0, SamplingBudgetScope.NODE, false);
+
+        for (int i = 0; i < 100; i++) {
+            SamplingResult result = sample(sampler, "orders");
+            assertEquals(SamplingDecision.RECORD_AND_SAMPLE, result.getDecision());
+            assertEquals(1.0, result.getAttributes().get(SAMPLING_PROBABILITY), 0.0);
+        }
+    }
+
+    @Test
+    public void nodeBudgetSetsTheProbability() {
+        ThroughputBudgetSampler sampler = sampler(() -> 10, 0, SamplingBudgetScope.NODE, false);
+        arrive(sampler, "orders", 1000);
+
+        int sampled = 0;
+        for (int i = 0; i < 10_000; i++) {
+            SamplingResult result = sample(sampler, "orders");
+            if (result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE) {
+                sampled++;
+                assertEquals(0.01, result.getAttributes().get(SAMPLING_PROBABILITY), 1e-9);
+            } else {
+                assertEquals(SamplingDecision.DROP, result.getDecision());
+            }
+        }
+        // 100 expected, the standard deviation is about 10
+        assertTrue("sampled " + sampled, sampled > 50 && sampled < 160);
+    }
+
+    @Test
+    public void floorKeepsLowTrafficFlowsVisible() {
+        ThroughputBudgetSampler sampler = sampler(() -> 10, 5, SamplingBudgetScope.NODE, false);
+        arrive(sampler, "busy", 1000, "quiet", 10);
+
+        // 10 traces per second of the quiet flow need half of them
+        assertEquals(0.5, sampledProbability(sampler, "quiet"), 1e-9);
+        // The node window closed at the first arrival of busy, before the last one
+        // of quiet
+        assertEquals(10 / 1009.0, sampledProbability(sampler, "busy"), 1e-9);
+    }
+
+    @Test
+    public void flowBudgetAppliesToEveryFlow() {
+        ThroughputBudgetSampler sampler = sampler(() -> 10, 0, SamplingBudgetScope.FLOW, false);
+        arrive(sampler, "busy", 1000, "quiet", 10);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(SamplingDecision.RECORD_AND_SAMPLE, sample(sampler, "quiet").getDecision());
+        }
+        assertEquals(0.01, sampledProbability(sampler, "busy"), 1e-9);
+    }
+
+    @Test
+    public void budgetIsReadForEveryRootSpan() {
+        double[] budget = {10};
+        ThroughputBudgetSampler sampler = sampler(() -> budget[0], 0, SamplingBudgetScope.NODE, false);
+        arrive(sampler, "orders", 1000);
+
+        budget[0] = 2000;
+
+        for (int i = 0; i < 100; i++) {
+            SamplingResult result = sample(sampler, "orders");
+            assertEquals(SamplingDecision.RECORD_AND_SAMPLE, result.getDecision());
+            assertEquals(1.0, result.getAttributes().get(SAMPLING_PROBABILITY), 0.0);
+        }
+    }
+
+    @Test
+    public void unsampledRootSpansCanBeRecorded() {
+        ThroughputBudgetSampler sampler = sampler(() -> 0, 0, SamplingBudgetScope.NODE, true);
+        arrive(sampler, "orders", 1000);
+
+        SamplingResult result = sample(sampler, "orders");
+
+        assertEquals(SamplingDecision.RECORD_ONLY, result.getDecision());
+        assertEquals(Attributes.empty(), result.getAttributes());
+    }
+
+    private ThroughputBudgetSampler sampler(DoubleSupplier tracesPerSecond, double minTracesPerFlow,
+            SamplingBudgetScope scope, boolean recordUnsampled) {
+        return new ThroughputBudgetSampler(tracesPerSecond, minTracesPerFlow, scope, recordUnsampled,
+                () -> now[0]);
+    }
+
+    // Arrivals of every flow during one second, the rates are estimated by the
+    // first arrival of the next second
+    private void arrive(ThroughputBudgetSampler sampler, Object... flowCounts) {
+        for (int i = 0; i < flowCounts.length; i += 2) {
+            for (int j = 0; j < (Integer) flowCounts[i + 1] - 1; j++) {
+                sample(sampler, (String) flowCounts[i]);
+            }
+        }
+        now[0] += SECOND;
+        for (int i = 0; i < flowCounts.length; i += 2) {
+            sample(sampler, (String) flowCounts[i]);
+        }
+    }
+
+    private double sampledProbability(ThroughputBudgetSampler sampler, String flowName) {
+        for (int i = 0; i < 100_000; i++) {
+            SamplingResult result = sample(sampler, flowName);
+            if (result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE) {
+                return result.getAttributes().get(SAMPLING_PROBABILITY);
+            }
+        }
+        throw new AssertionError("No root span of " + flowName + " sampled");
+    }
+
+    private static SamplingResult sample(ThroughputBudgetSampler sampler, String flowName) {
+        return sampler.shouldSample(Context.root(), TRACE_ID, flowName, SpanKind.SERVER,
+                Attributes.of(AttributeKey.stringKey(Constants.SERVICE_FLOW_NAME), flowName),
+                Collections.emptyList());
+    }
+}
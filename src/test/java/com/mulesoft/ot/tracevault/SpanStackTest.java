@@ -0,0 +1,103 @@
+package com.mulesoft.ot.tracevault;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Push, removal and lookups of the stack of open spans
+ */
+public class SpanStackTest {
+
+    @Test
+    public void findsTheInnermostSpans() {
+        SpanStack<String> stack = new SpanStack<>(16);
+        stack.push("orders", "orders-flow");
+        stack.push("request", null);
+        stack.push("lookup", "lookup-flow");
+        stack.push("select", null);
+
+        assertEquals("orders", stack.innermostFlow("orders-flow"));
+        assertEquals("lookup", stack.innermostFlow("LOOKUP-FLOW"));
+        assertNull(stack.innermostFlow("unknown-flow"));
+        assertEquals("lookup", stack.innermostFlow());
+        // The processor span enclosing the flow reference is the parent, not the flow span
+        assertEquals("request", stack.innermostParent("orders-flow", "request"::equals));
+        assertEquals("orders", stack.innermostParent("orders-flow", span -> false));
+        assertEquals("select", stack.innermostParent("lookup-flow", "select"::equals));
+        assertNull(stack.innermostParent("unknown-flow", span -> false));
+    }
+
+    @Test
+    public void removesSpansInAnyOrder() {
+        SpanStack<String> stack = new SpanStack<>(16);
+        stack.push("orders", "orders-flow");
+        stack.push("request", null);
+        stack.push("lookup", "lookup-flow");
+        stack.push("select", null);
+
+        // Out of order, the flow span ends before the innermost processor span
+        assertTrue(stack.remove("lookup"));
+        assertEquals(3, stack.size());
+        assertNull(stack.innermostFlow("lookup-flow"));
+        assertEquals("orders", stack.innermostFlow());
+        assertEquals("select", stack.innermostParent("orders-flow", span -> true));
+
+        assertTrue(stack.remove("select"));
+        assertTrue(stack.remove("request"));
+        assertFalse(stack.remove("request"));
+        assertEquals(1, stack.size());
+        assertTrue(stack.remove("orders"));
+        assertEquals(0, stack.size());
+        assertNull(stack.innermostFlow());
+    }
+
+    @Test
+    public void removesBySpanIdentity() {
+        SpanStack<String> stack = new SpanStack<>(16);
+        String first = new String("set-payload");
+        String second = new String("set-payload");
+        stack.push(first, null);
+        stack.push(second, null);
+
+        assertTrue(stack.remove(first));
+        assertEquals(1, stack.size());
+        assertSame(second, stack.innermostParent("orders-flow", span -> true));
+        assertFalse(stack.remove(new String("set-payload")));
+    }
+
+    @Test
+    public void growsUpToTheMaximumSize() {
+        SpanStack<Object> stack = new SpanStack<>(20);
+        Object[] spans = new Object[20];
+        for (int i = 0; i < 20; i++) {
+            spans[i] = new Object();
+            assertTrue(stack.push(spans[i], i % 5 == 0 ? "flow-" + i : null));
+        }
+        assertFalse(stack.push(new Object(), null));
+        assertEquals(20, stack.size());
+        assertSame(spans[15], stack.innermostFlow());
+        assertSame(spans[0], stack.innermostFlow("flow-0"));
+
+        assertTrue(stack.remove(spans[0]));
+        assertTrue(stack.push(new Object(), null));
+        assertEquals(20, stack.size());
+    }
+
+    @Test
+    public void clearRemovesAllSpans() {
+        SpanStack<String> stack = new SpanStack<>(1);
+        assertTrue(stack.push("orders", "orders-flow"));
+        assertFalse(stack.push("request", null));
+
+        stack.clear();
+
+        assertEquals(0, stack.size());
+        assertNull(stack.innermostFlow("orders-flow"));
+        assertTrue(stack.push("request", null));
+    }
+}